@@ -0,0 +1,105 @@
+package com.maxenceraux.purse_test.benchmark;
+
+import com.maxenceraux.purse_test.PurseTestApplication;
+import com.maxenceraux.purse_test.model.Money;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import com.maxenceraux.purse_test.repository.PurchaseRepository;
+import com.maxenceraux.purse_test.repository.PurchasedProductRepository;
+import com.maxenceraux.purse_test.service.PurchaseService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Compares {@link PurchaseService#createPurchase(Purchase)}, which inserts the products with one batched statement
+ * in a transaction, with the former one INSERT per product implementation, for several basket sizes.
+ * Bulk creation through {@link PurchaseService#createPurchases(List)}, as done by the batch endpoint, is measured too.
+ * <p>
+ * The embedded H2 database still executes every binding of a batch, so the statement count barely moves:
+ * the gain comes from the products being sent in one statement instead of one round trip each.
+ * <p>
+ * Run it from the IDE, or with {@code mvn -Pjmh test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.maxenceraux.purse_test.benchmark.CreatePurchaseBenchmark -Dexec.args="2000"}.
+ */
+public class CreatePurchaseBenchmark {
+
+    private static final int[] BASKET_SIZES = {1, 10, 200};
+    private static final int CONCURRENCY = 16;
+    private static final int CHUNK_SIZE = 100;
+    private static final int CHUNK_CONCURRENCY = 4;
+
+    public static void main(String[] args) {
+        int purchases = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+
+        var application = new SpringApplication(PurseTestApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        try (var context = application.run("--logging.level.root=WARN")) {
+            var queryStatistics = new QueryStatistics(context.getBean(DatabaseClient.class));
+            var purchaseRepository = context.getBean(PurchaseRepository.class);
+            var purchasedProductRepository = context.getBean(PurchasedProductRepository.class);
+            var purchaseService = context.getBean(PurchaseService.class);
+
+            Function<Purchase, Mono<Purchase>> onePerProduct = purchase -> {
+                purchase.initPurchase();
+                return purchaseRepository.save(purchase)
+                        .flatMap(savedPurchase -> {
+                            var purchasedProducts = purchase.getPurchasedProducts();
+                            purchasedProducts.forEach(purchasedProduct -> purchasedProduct.setPurchaseId(savedPurchase.getId()));
+                            return purchasedProductRepository.saveAll(purchasedProducts)
+                                    .collectList()
+                                    .map(savedPurchase::withPurchasedProducts);
+                        });
+            };
+
+            for (int basketSize : BASKET_SIZES) {
+                int rounds = Math.max(purchases / basketSize, 20);
+                run("one insert per product", basketSize, rounds, queryStatistics,
+                        toCreate -> toCreate.flatMap(onePerProduct, CONCURRENCY));
+                run("batched insert", basketSize, rounds, queryStatistics,
+                        toCreate -> toCreate.flatMap(purchaseService::createPurchase, CONCURRENCY));
+                run("bulk creation", basketSize, rounds, queryStatistics,
+                        toCreate -> toCreate.buffer(CHUNK_SIZE).flatMapSequential(purchaseService::createPurchases, CHUNK_CONCURRENCY));
+            }
+        }
+    }
+
+    private static void run(String name, int basketSize, int rounds, QueryStatistics queryStatistics,
+                            Function<Flux<Purchase>, Flux<Purchase>> create) {
+        // warmup
+        createAll(basketSize, rounds, create);
+
+        queryStatistics.start();
+        long start = System.nanoTime();
+        createAll(basketSize, rounds, create);
+        long elapsedNanos = System.nanoTime() - start;
+        long queries = queryStatistics.stop();
+
+        System.out.printf("%-24s %4d products  %8.1f statements/purchase  %10.0f purchases/s  %10.0f products/s%n",
+                name,
+                basketSize,
+                (double) queries / rounds,
+                rounds * 1e9 / elapsedNanos,
+                (double) rounds * basketSize * 1e9 / elapsedNanos);
+    }
+
+    private static void createAll(int basketSize, int rounds, Function<Flux<Purchase>, Flux<Purchase>> create) {
+        create.apply(Flux.range(0, rounds).map(i -> buildPurchase(basketSize)))
+                .blockLast();
+    }
+
+    private static Purchase buildPurchase(int basketSize) {
+        List<PurchasedProduct> purchasedProducts = IntStream.range(0, basketSize)
+                .mapToObj(i -> new PurchasedProduct(null, "name" + i, "ref" + i, 2, Money.of(BigDecimal.valueOf(3.1), "EUR"), null))
+                .toList();
+        return new Purchase(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, null, purchasedProducts);
+    }
+}
@@ -0,0 +1,90 @@
+package com.maxenceraux.purse_test.benchmark;
+
+import com.maxenceraux.purse_test.PurseTestApplication;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.repository.PurchaseRepository;
+import com.maxenceraux.purse_test.repository.PurchasedProductRepository;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Compares the join based {@link PurchaseRepository#findAllWithProducts()} read path, one query per keyset page, with the former
+ * one query per purchase implementation, on an in-memory database seeded with
+ * {@code purchases} purchases of {@code productsPerPurchase} products each.
+ * <p>
+ * Query counts are read from H2's query statistics, latencies are averaged over
+ * {@value #MEASURED_ROUNDS} calls after {@value #WARMUP_ROUNDS} warmup calls.
+ * Run it from the IDE, or with {@code mvn -Pjmh test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.maxenceraux.purse_test.benchmark.FindAllPurchasesBenchmark -Dexec.args="10000 3"}.
+ */
+public class FindAllPurchasesBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int purchases = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int productsPerPurchase = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        var application = new SpringApplication(PurseTestApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        try (var context = application.run("--logging.level.root=WARN")) {
+            var databaseClient = context.getBean(DatabaseClient.class);
+            var purchaseRepository = context.getBean(PurchaseRepository.class);
+            var purchasedProductRepository = context.getBean(PurchasedProductRepository.class);
+
+            seed(databaseClient, purchases, productsPerPurchase);
+
+            run("one query per purchase", databaseClient, () -> purchaseRepository.findAll()
+                    .flatMap(purchase -> purchasedProductRepository.findAllByPurchaseId(purchase.getId())
+                            .collectList()
+                            .map(purchase::withPurchasedProducts)));
+            run("join query per page", databaseClient, purchaseRepository::findAllWithProducts);
+        }
+    }
+
+    private static void seed(DatabaseClient databaseClient, int purchases, int productsPerPurchase) {
+        databaseClient.sql("""
+                        INSERT INTO PURCHASE (amount, currency, payment_method, status)
+                        SELECT 1240, 'EUR', 'CREDIT_CARD', 'IN_PROGRESS' FROM SYSTEM_RANGE(1, :purchases)
+                        """)
+                .bind("purchases", purchases)
+                .then()
+                .block();
+        databaseClient.sql("""
+                        INSERT INTO PURCHASED_PRODUCT (purchase_id, name, reference, quantity, price)
+                        SELECT p.id, 'name', 'ref', 4, 310 FROM PURCHASE p, SYSTEM_RANGE(1, :products)
+                        """)
+                .bind("products", productsPerPurchase)
+                .then()
+                .block();
+    }
+
+    private static void run(String name, DatabaseClient databaseClient, Supplier<Flux<Purchase>> findAll) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            findAll.get().blockLast();
+        }
+
+        var queryStatistics = new QueryStatistics(databaseClient);
+        queryStatistics.start();
+        long totalNanos = 0;
+        long purchases = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            purchases = findAll.get().count().blockOptional().orElse(0L);
+            totalNanos += System.nanoTime() - start;
+        }
+        long queries = queryStatistics.stop();
+
+        System.out.printf("%-24s %8d purchases  %8d queries/call  %8d ms/call%n",
+                name,
+                purchases,
+                queries / MEASURED_ROUNDS,
+                Duration.ofNanos(totalNanos / MEASURED_ROUNDS).toMillis());
+    }
+}
@@ -0,0 +1,105 @@
+package com.maxenceraux.purse_test.benchmark;
+
+import com.maxenceraux.purse_test.PurseTestApplication;
+import com.maxenceraux.purse_test.model.Money;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import com.maxenceraux.purse_test.service.PurchaseService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Runs a mix of {@link PurchaseService} operations (creation, page read and payment method change) from
+ * {@code concurrency} concurrent clients against the application started with each pool size in turn,
+ * and prints throughput, p50 and p99 latencies and the operations failed on an acquire timeout.
+ * Throughput stops growing with the pool size past the knee, while latencies keep growing with queueing.
+ * <p>
+ * Run it from the IDE, or with {@code mvn -Pjmh test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.maxenceraux.purse_test.benchmark.PoolSizingBenchmark -Dexec.args="20000 256 1,2,4,8,16,32"}.
+ */
+public class PoolSizingBenchmark {
+
+    private static final int SEEDED_PURCHASES = 1_000;
+    private static final int PAGE_SIZE = 20;
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int[] poolSizes = args.length > 2
+                ? Arrays.stream(args[2].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1, 2, 4, 8, 16, 32};
+
+        for (int poolSize : poolSizes) {
+            var application = new SpringApplication(PurseTestApplication.class);
+            application.setWebApplicationType(WebApplicationType.NONE);
+            try (var context = application.run("--logging.level.root=WARN",
+                    "--spring.r2dbc.url=r2dbc:h2:mem:///pool" + poolSize,
+                    "--spring.r2dbc.pool.initial-size=" + poolSize,
+                    "--spring.r2dbc.pool.min-idle=" + poolSize,
+                    "--spring.r2dbc.pool.max-size=" + poolSize)) {
+                var purchaseService = context.getBean(PurchaseService.class);
+                purchaseService.createPurchases(Stream.generate(PoolSizingBenchmark::newPurchase).limit(SEEDED_PURCHASES).toList())
+                        .blockLast();
+
+                // warmup
+                runAll(purchaseService, operations, concurrency, new long[operations], new AtomicInteger());
+
+                var latencies = new long[operations];
+                var failures = new AtomicInteger();
+                long start = System.nanoTime();
+                runAll(purchaseService, operations, concurrency, latencies, failures);
+                long elapsedNanos = System.nanoTime() - start;
+
+                Arrays.sort(latencies);
+                System.out.printf("pool %3d  %4d concurrent  %10.0f ops/s  p50 %8.3f ms  p99 %8.3f ms  %6d failed%n",
+                        poolSize,
+                        concurrency,
+                        operations * 1e9 / elapsedNanos,
+                        latencies[operations / 2] / 1e6,
+                        latencies[(int) (operations * 0.99)] / 1e6,
+                        failures.get());
+            }
+        }
+    }
+
+    private static void runAll(PurchaseService purchaseService, int operations, int concurrency,
+                               long[] latencies, AtomicInteger failures) {
+        Flux.range(0, operations)
+                .flatMap(i -> {
+                    var operation = switch (i % 3) {
+                        case 0 -> purchaseService.createPurchase(newPurchase()).then();
+                        case 1 -> purchaseService.findAllPurchases(randomId(), PAGE_SIZE).then();
+                        default -> purchaseService.changePaymentMethod(randomId(), PaymentMethod.PAYPAL).then();
+                    };
+                    return Mono.defer(() -> {
+                        long start = System.nanoTime();
+                        return operation
+                                .doOnError(e -> failures.incrementAndGet())
+                                .onErrorComplete()
+                                .doFinally(signal -> latencies[i] = System.nanoTime() - start);
+                    });
+                }, concurrency)
+                .blockLast();
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, SEEDED_PURCHASES + 1);
+    }
+
+    private static Purchase newPurchase() {
+        var purchasedProducts = List.of(
+                new PurchasedProduct(null, "name", "ref", 2, Money.of(new BigDecimal("3.10"), "EUR"), null),
+                new PurchasedProduct(null, "name2", "ref2", 1, Money.of(new BigDecimal("12.40"), "EUR"), null));
+        return new Purchase(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, null, purchasedProducts);
+    }
+}
@@ -0,0 +1,96 @@
+package com.maxenceraux.purse_test.benchmark;
+
+import com.maxenceraux.purse_test.PurseTestApplication;
+import com.maxenceraux.purse_test.repository.PurchaseRepository;
+import com.maxenceraux.purse_test.repository.PurchasedProductRepository;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+
+/**
+ * Measures looking the products of a purchase up, with {@link PurchasedProductRepository#findAllByPurchaseId(Long)}
+ * and {@link PurchaseRepository#findByIdWithProducts(Long)}, on a database seeded with {@code productRows} product
+ * rows, first with the IDX_PURCHASED_PRODUCT_PURCHASE_ID index then without any index on purchase_id.
+ * <p>
+ * H2 backs a foreign key with an index of its own when none exists, so the foreign key is dropped too to measure
+ * the unindexed case, as found on databases that do not index foreign keys.
+ * Seeding 10M rows needs a few GB of heap. Run it from the IDE, or with {@code mvn -Pjmh test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=com.maxenceraux.purse_test.benchmark.ProductLookupBenchmark
+ * -Dexec.args="10000000 3"}, with {@code MAVEN_OPTS=-Xmx6g}.
+ */
+public class ProductLookupBenchmark {
+
+    private static final int INDEXED_LOOKUPS = 10_000;
+    private static final int UNINDEXED_LOOKUPS = 20;
+
+    public static void main(String[] args) {
+        long productRows = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        int productsPerPurchase = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        long purchases = productRows / productsPerPurchase;
+
+        var application = new SpringApplication(PurseTestApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        try (var context = application.run("--logging.level.root=WARN")) {
+            var databaseClient = context.getBean(DatabaseClient.class);
+            var purchaseRepository = context.getBean(PurchaseRepository.class);
+            var purchasedProductRepository = context.getBean(PurchasedProductRepository.class);
+
+            seed(databaseClient, purchases, productsPerPurchase);
+
+            LongConsumer findProducts = id -> purchasedProductRepository.findAllByPurchaseId(id).collectList().block();
+            LongConsumer findPurchase = id -> purchaseRepository.findByIdWithProducts(id).block();
+
+            run("findAllByPurchaseId, indexed", INDEXED_LOOKUPS, purchases, findProducts);
+            run("findByIdWithProducts, indexed", INDEXED_LOOKUPS, purchases, findPurchase);
+
+            dropPurchaseIdIndexes(databaseClient);
+            run("findAllByPurchaseId, unindexed", UNINDEXED_LOOKUPS, purchases, findProducts);
+            run("findByIdWithProducts, unindexed", UNINDEXED_LOOKUPS, purchases, findPurchase);
+        }
+    }
+
+    private static void seed(DatabaseClient databaseClient, long purchases, int productsPerPurchase) {
+        databaseClient.sql("""
+                        INSERT INTO PURCHASE (amount, currency, payment_method, status)
+                        SELECT 1240, 'EUR', 'CREDIT_CARD', 'IN_PROGRESS' FROM SYSTEM_RANGE(1, :purchases)
+                        """)
+                .bind("purchases", purchases)
+                .then()
+                .block();
+        databaseClient.sql("""
+                        INSERT INTO PURCHASED_PRODUCT (purchase_id, name, reference, quantity, price)
+                        SELECT p.id, 'name', 'ref', 4, 310 FROM PURCHASE p, SYSTEM_RANGE(1, :products)
+                        """)
+                .bind("products", productsPerPurchase)
+                .then()
+                .block();
+    }
+
+    private static void dropPurchaseIdIndexes(DatabaseClient databaseClient) {
+        var foreignKey = databaseClient.sql("""
+                        SELECT CONSTRAINT_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS
+                        WHERE TABLE_NAME = 'PURCHASED_PRODUCT' AND CONSTRAINT_TYPE = 'FOREIGN KEY'
+                        """)
+                .map(row -> row.get("CONSTRAINT_NAME", String.class))
+                .one()
+                .block();
+        databaseClient.sql("ALTER TABLE PURCHASED_PRODUCT DROP CONSTRAINT " + foreignKey).then().block();
+        databaseClient.sql("DROP INDEX IF EXISTS IDX_PURCHASED_PRODUCT_PURCHASE_ID").then().block();
+    }
+
+    private static void run(String name, int lookups, long purchases, LongConsumer find) {
+        // warmup
+        find.accept(1L);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            find.accept(ThreadLocalRandom.current().nextLong(1, purchases + 1));
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        System.out.printf("%-32s %10.3f ms/lookup%n", name, elapsedNanos / 1e6 / lookups);
+    }
+}
@@ -0,0 +1,92 @@
+package com.maxenceraux.purse_test.benchmark;
+
+import com.maxenceraux.purse_test.PurseTestApplication;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.repository.PurchaseRepository;
+import com.maxenceraux.purse_test.service.PurchaseLookupBatcher;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Compares looking purchases up one query at a time with {@link PurchaseLookupBatcher}, which gathers the
+ * concurrent lookups into one query per batch, under a poll load of {@code concurrency} concurrent lookups
+ * of random ids. The purchase cache is bypassed so that every lookup reaches the database.
+ * <p>
+ * Run it from the IDE, or with {@code mvn -Pjmh test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.maxenceraux.purse_test.benchmark.PurchaseLookupBenchmark -Dexec.args="20000 256"}.
+ */
+public class PurchaseLookupBenchmark {
+
+    private static final int PURCHASES = 10_000;
+    private static final int PRODUCTS_PER_PURCHASE = 3;
+
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+        var application = new SpringApplication(PurseTestApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        try (var context = application.run("--logging.level.root=WARN")) {
+            var databaseClient = context.getBean(DatabaseClient.class);
+            var purchaseRepository = context.getBean(PurchaseRepository.class);
+            var batcher = context.getBean(PurchaseLookupBatcher.class);
+
+            seed(databaseClient);
+
+            var queryStatistics = new QueryStatistics(databaseClient);
+            run("one query per lookup", lookups, concurrency, queryStatistics, purchaseRepository::findByIdWithProducts);
+            run("batched lookups", lookups, concurrency, queryStatistics, batcher::load);
+            // latency at low load, where lookups hardly ever share a batch
+            run("one query per lookup", 1_000, 1, queryStatistics, purchaseRepository::findByIdWithProducts);
+            run("batched lookups", 1_000, 1, queryStatistics, batcher::load);
+        }
+    }
+
+    private static void seed(DatabaseClient databaseClient) {
+        databaseClient.sql("""
+                        INSERT INTO PURCHASE (amount, currency, payment_method, status)
+                        SELECT 1240, 'EUR', 'CREDIT_CARD', 'IN_PROGRESS' FROM SYSTEM_RANGE(1, :purchases)
+                        """)
+                .bind("purchases", PURCHASES)
+                .then()
+                .block();
+        databaseClient.sql("""
+                        INSERT INTO PURCHASED_PRODUCT (purchase_id, name, reference, quantity, price)
+                        SELECT p.id, 'name', 'ref', 4, 310 FROM PURCHASE p, SYSTEM_RANGE(1, :products)
+                        """)
+                .bind("products", PRODUCTS_PER_PURCHASE)
+                .then()
+                .block();
+    }
+
+    private static void run(String name, int lookups, int concurrency, QueryStatistics queryStatistics,
+                            Function<Long, Mono<Purchase>> find) {
+        // warmup
+        findAll(lookups, concurrency, find);
+
+        queryStatistics.start();
+        long start = System.nanoTime();
+        findAll(lookups, concurrency, find);
+        long elapsedNanos = System.nanoTime() - start;
+        long queries = queryStatistics.stop();
+
+        System.out.printf("%-24s %4d concurrent  %8.3f queries/lookup  %10.0f lookups/s  %8.3f ms/lookup%n",
+                name,
+                concurrency,
+                (double) queries / lookups,
+                lookups * 1e9 / elapsedNanos,
+                elapsedNanos / 1e6 * concurrency / lookups);
+    }
+
+    private static void findAll(int lookups, int concurrency, Function<Long, Mono<Purchase>> find) {
+        Flux.range(0, lookups)
+                .flatMap(i -> find.apply(ThreadLocalRandom.current().nextLong(1, PURCHASES + 1)), concurrency)
+                .blockLast();
+    }
+}
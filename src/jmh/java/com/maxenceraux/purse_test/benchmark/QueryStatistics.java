@@ -0,0 +1,42 @@
+package com.maxenceraux.purse_test.benchmark;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Counts the statements executed by the embedded H2 database, using its {@code INFORMATION_SCHEMA.QUERY_STATISTICS}.
+ */
+class QueryStatistics {
+
+    // the pool validates connections on acquire, those round trips are left out of the count
+    private static final String COUNT_QUERIES = """
+            SELECT SUM(EXECUTION_COUNT) AS QUERIES FROM INFORMATION_SCHEMA.QUERY_STATISTICS
+            WHERE SQL_STATEMENT <> 'SELECT CURRENT_TIMESTAMP'
+            """;
+
+    private final DatabaseClient databaseClient;
+
+    QueryStatistics(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Starts counting from zero.
+     */
+    void start() {
+        databaseClient.sql("SET QUERY_STATISTICS FALSE").then().block();
+        databaseClient.sql("SET QUERY_STATISTICS TRUE").then().block();
+    }
+
+    /**
+     * Stops counting and returns the number of statements executed since {@link #start()}.
+     */
+    long stop() {
+        long queries = databaseClient.sql(COUNT_QUERIES)
+                .map(row -> row.get("QUERIES", Long.class))
+                .one()
+                .blockOptional()
+                .orElse(0L);
+        databaseClient.sql("SET QUERY_STATISTICS FALSE").then().block();
+        return queries;
+    }
+}
@@ -0,0 +1,129 @@
+package com.maxenceraux.purse_test.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from launching the application to its first successful {@code GET /api/purchase/{id}},
+ * over several cold starts of a separate process, so that the way the application is packaged and launched is
+ * measured too: plain jar, AOT processed jar with a class data sharing archive, or native executable.
+ * <p>
+ * A database holding one purchase is created with a first start, then every measured start opens it in the FILE
+ * storage mode, so that the first request reads an existing purchase without any write before it.
+ * <p>
+ * Run it with the number of starts followed by the launch command, for instance after {@code mvn -Pcds package}:
+ * {@code mvn -Pjmh test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.maxenceraux.purse_test.benchmark.StartupBenchmark
+ * -Dexec.args="10 java -XX:SharedArchiveFile=target/extracted/application.jsa -Dspring.aot.enabled=true
+ * -jar target/extracted/purse-test-0.0.1-SNAPSHOT.jar"}.
+ */
+public class StartupBenchmark {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(5);
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(60);
+    private static final String PURCHASE = """
+            {"currency": "EUR", "paymentMethod": "CREDIT_CARD",
+             "purchasedProducts": [{"name": "name", "reference": "ref", "quantity": 1, "price": 3.10}]}
+            """;
+
+    private static final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        int starts = Integer.parseInt(args[0]);
+        var command = Arrays.asList(args).subList(1, args.length);
+        var directory = Files.createTempDirectory("startup-benchmark");
+
+        long purchaseId = seed(command, directory);
+        var millis = new long[starts];
+        for (int i = 0; i < starts; i++) {
+            millis[i] = timeToFirstRead(command, directory, purchaseId);
+            System.out.printf("start %2d  %6d ms%n", i + 1, millis[i]);
+        }
+        Arrays.sort(millis);
+        System.out.printf("min %d ms  median %d ms  max %d ms%n", millis[0], millis[starts / 2], millis[starts - 1]);
+    }
+
+    private static long seed(List<String> command, Path directory) throws Exception {
+        int port = freePort();
+        var application = launch(command, directory, port);
+        try {
+            var created = awaitSuccess(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/purchase"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(PURCHASE))
+                    .build());
+            var id = created.body().replaceAll("(?s).*\"id\"\\s*:\\s*(\\d+).*", "$1");
+            return Long.parseLong(id);
+        } finally {
+            stop(application);
+        }
+    }
+
+    private static long timeToFirstRead(List<String> command, Path directory, long purchaseId) throws Exception {
+        int port = freePort();
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/purchase/" + purchaseId))
+                .GET()
+                .build();
+        long start = System.nanoTime();
+        var application = launch(command, directory, port);
+        try {
+            awaitSuccess(request);
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } finally {
+            stop(application);
+        }
+    }
+
+    private static Process launch(List<String> command, Path directory, int port) throws IOException {
+        var arguments = new ArrayList<>(command);
+        arguments.add("--server.port=" + port);
+        arguments.add("--purchase.storage.mode=FILE");
+        arguments.add("--purchase.storage.directory=" + directory);
+        arguments.add("--logging.level.root=WARN");
+        return new ProcessBuilder(arguments)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private static HttpResponse<String> awaitSuccess(HttpRequest request) throws InterruptedException {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() / 100 == 2) {
+                    return response;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+        throw new IllegalStateException("No successful response to " + request.uri() + " within " + STARTUP_TIMEOUT);
+    }
+
+    private static void stop(Process application) throws InterruptedException {
+        application.destroy();
+        if (!application.waitFor(10, TimeUnit.SECONDS)) {
+            application.destroyForcibly().waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.maxenceraux.purse_test.jmh;
+
+import com.maxenceraux.purse_test.PurseTestApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the application as it runs in production, on a random port and with its embedded H2 database,
+ * so that benchmarks measure the beans and the configuration actually serving requests.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... args) {
+        var arguments = new ArrayList<>(List.of("--server.port=0", "--logging.level.root=WARN"));
+        arguments.addAll(List.of(args));
+        return SpringApplication.run(PurseTestApplication.class, arguments.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,72 @@
+package com.maxenceraux.purse_test.jmh;
+
+import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.model.Money;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures {@link Purchase#initPurchase()}, which sums the total cost of every purchased product in minor units,
+ * for several basket sizes, against the previous BigDecimal computation over the same basket.
+ * Run with the {@code gc} profiler, as the {@code jmh} profile does, to compare the bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PurchaseAmountBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int productsPerPurchase;
+
+    private Purchase purchase;
+
+    private List<BigDecimal> prices;
+
+    private List<Integer> quantities;
+
+    @Setup
+    public void setUp() {
+        purchase = PurchaseFactory.buildPurchase(null, IntStream.range(0, productsPerPurchase)
+                .mapToObj(i -> PurchaseFactory.buildProduct("name" + i, "ref" + i, i % 5 + 1, BigDecimal.valueOf(310 + i, 2), null))
+                .toList());
+        prices = purchase.getPurchasedProducts().stream()
+                .map(purchasedProduct -> purchasedProduct.getPrice().toBigDecimal(purchase.getCurrency()))
+                .toList();
+        quantities = purchase.getPurchasedProducts().stream()
+                .map(PurchasedProduct::getQuantity)
+                .toList();
+    }
+
+    @Benchmark
+    public Money initPurchase() {
+        purchase.initPurchase();
+        return purchase.getAmount();
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalBaseline() {
+        return IntStream.range(0, prices.size())
+                .mapToObj(i -> prices.get(i).multiply(new BigDecimal(quantities.get(i))))
+                .reduce(BigDecimal::add)
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,109 @@
+package com.maxenceraux.purse_test.jmh;
+
+import com.maxenceraux.purse_test.mapper.PurchaseDtoToPurchaseMapperImpl;
+import com.maxenceraux.purse_test.mapper.PurchaseMapper;
+import com.maxenceraux.purse_test.mapper.PurchaseToPurchaseDtoMapperImpl;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchasedProductDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.format.support.DefaultFormattingConversionService;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares mapping responses of {@code responseSize} purchases with the {@link PurchaseMapper}, which calls the
+ * MapStruct mappers directly, to the former dispatch through a {@link DefaultFormattingConversionService}
+ * the mappers were registered in, which looks the converter up for every element.
+ * Purchases are mapped as a {@link Flux}, as the controller does, and the creation request mapping is measured too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseConversionBenchmark {
+
+    private static final int PRODUCTS_PER_PURCHASE = 3;
+
+    @Param({"1", "10000"})
+    public int responseSize;
+
+    private PurchaseMapper purchaseMapper;
+    private ConversionService conversionService;
+    private PurchaseDTO purchaseDto;
+    private List<Purchase> purchases;
+
+    @Setup
+    public void setUp() {
+        var purchaseToPurchaseDtoMapper = new PurchaseToPurchaseDtoMapperImpl();
+        var purchaseDtoToPurchaseMapper = new PurchaseDtoToPurchaseMapperImpl();
+        purchaseMapper = new PurchaseMapper(purchaseToPurchaseDtoMapper, purchaseDtoToPurchaseMapper);
+        var dispatchingConversionService = new DefaultFormattingConversionService();
+        dispatchingConversionService.addConverter(Purchase.class, PurchaseDTO.class, purchaseToPurchaseDtoMapper::toDto);
+        dispatchingConversionService.addConverter(PurchaseDTO.class, Purchase.class, purchaseDtoToPurchaseMapper::toPurchase);
+        conversionService = dispatchingConversionService;
+
+        purchaseDto = new PurchaseDTO(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, IntStream.range(0, PRODUCTS_PER_PURCHASE)
+                .mapToObj(i -> new PurchasedProductDTO("name" + i, "ref" + i, i % 5 + 1, BigDecimal.valueOf(310 + i, 2)))
+                .toList());
+        purchases = IntStream.range(0, responseSize)
+                .mapToObj(i -> {
+                    var purchase = purchaseMapper.toPurchase(purchaseDto);
+                    purchase.setId((long) i + 1);
+                    purchase.setVersion(0L);
+                    purchase.setStatus(PaymentStatus.IN_PROGRESS);
+                    purchase.initPurchase();
+                    return purchase;
+                })
+                .toList();
+    }
+
+    @Benchmark
+    public List<PurchaseDTO> conversionServiceResponse() {
+        return Flux.fromIterable(purchases)
+                .map(purchase -> conversionService.convert(purchase, PurchaseDTO.class))
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<PurchaseDTO> mapperResponse() {
+        return purchaseMapper.toDtos(Flux.fromIterable(purchases))
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<PurchaseDTO> mapperListResponse() {
+        return purchaseMapper.toDtos(purchases);
+    }
+
+    @Benchmark
+    public Purchase conversionServiceToPurchase() {
+        return conversionService.convert(purchaseDto, Purchase.class);
+    }
+
+    @Benchmark
+    public Purchase mapperToPurchase() {
+        return purchaseMapper.toPurchase(purchaseDto);
+    }
+}
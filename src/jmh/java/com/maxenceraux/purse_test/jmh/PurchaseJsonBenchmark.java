@@ -0,0 +1,74 @@
+package com.maxenceraux.purse_test.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchasedProductDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures the JSON serialization of a {@link PurchaseDTO}, as returned by the API, and its deserialization from
+ * a request body, with the {@link ObjectMapper} configured by the application for its WebFlux codecs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseJsonBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int productsPerPurchase;
+
+    private ConfigurableApplicationContext context;
+    private ObjectMapper objectMapper;
+    private PurchaseDTO purchaseDto;
+    private byte[] requestBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = BenchmarkApplication.start();
+        objectMapper = context.getBean(ObjectMapper.class);
+        var purchasedProducts = IntStream.range(0, productsPerPurchase)
+                .mapToObj(i -> new PurchasedProductDTO("name" + i, "ref" + i, i % 5 + 1, BigDecimal.valueOf(310 + i, 2)))
+                .toList();
+        purchaseDto = new PurchaseDTO(1L, BigDecimal.valueOf(1240, 2), "EUR", PaymentMethod.CREDIT_CARD,
+                PaymentStatus.IN_PROGRESS, purchasedProducts);
+        requestBody = objectMapper.writeValueAsBytes(
+                new PurchaseDTO(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, purchasedProducts));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(purchaseDto);
+    }
+
+    @Benchmark
+    public PurchaseDTO deserialize() throws IOException {
+        return objectMapper.readValue(requestBody, PurchaseDTO.class);
+    }
+}
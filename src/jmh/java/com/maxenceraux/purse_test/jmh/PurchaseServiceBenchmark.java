@@ -0,0 +1,92 @@
+package com.maxenceraux.purse_test.jmh;
+
+import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.service.PurchaseService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures the {@link PurchaseService} read and write paths end to end, against the embedded H2 database over R2DBC,
+ * seeded with {@value #PURCHASES} purchases of {@value #PRODUCTS_PER_PURCHASE} products each.
+ * <p>
+ * Lookups by id go through the purchase cache, as they do in production, so after warmup they mostly measure hits.
+ * Every created purchase stays in the database, which grows over the run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseServiceBenchmark {
+
+    private static final int PURCHASES = 1_000;
+    private static final int PRODUCTS_PER_PURCHASE = 3;
+    private static final int PAGE_SIZE = 100;
+
+    private ConfigurableApplicationContext context;
+    private PurchaseService purchaseService;
+    private long[] purchaseIds;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        purchaseService = context.getBean(PurchaseService.class);
+        purchaseIds = purchaseService.createPurchases(IntStream.range(0, PURCHASES)
+                        .mapToObj(i -> newPurchase())
+                        .toList())
+                .map(Purchase::getId)
+                .collectList()
+                .block()
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Purchase findPurchaseById() {
+        return purchaseService.findPurchaseById(purchaseIds[ThreadLocalRandom.current().nextInt(purchaseIds.length)])
+                .block();
+    }
+
+    @Benchmark
+    public List<Purchase> findPurchasePage() {
+        return purchaseService.findAllPurchases(0L, PAGE_SIZE)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public Purchase createPurchase() {
+        return purchaseService.createPurchase(newPurchase())
+                .block();
+    }
+
+    private static Purchase newPurchase() {
+        return PurchaseFactory.buildPurchase(null, IntStream.range(0, PRODUCTS_PER_PURCHASE)
+                .mapToObj(i -> PurchaseFactory.buildProduct("name" + i, "ref" + i, i + 1, BigDecimal.valueOf(310 + i, 2), null))
+                .toList());
+    }
+}
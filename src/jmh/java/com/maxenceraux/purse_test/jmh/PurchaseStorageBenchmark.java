@@ -0,0 +1,93 @@
+package com.maxenceraux.purse_test.jmh;
+
+import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.service.PurchaseService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the write throughput of the storage modes: the in-memory database, and the file database writing
+ * every commit before acknowledging it or grouping the writes of the commits made within {@code writeDelay}.
+ * Purchases are created one at a time, and {@value #BATCH_SIZE} at a time as the batch endpoint does.
+ * The file database starts empty in a temporary directory, deleted after the run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseStorageBenchmark {
+
+    private static final int PRODUCTS_PER_PURCHASE = 3;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"MEMORY", "FILE"})
+    public String mode;
+
+    @Param({"0ms", "500ms"})
+    public String writeDelay;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private PurchaseService purchaseService;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("purchase-storage");
+        context = BenchmarkApplication.start(
+                "--purchase.storage.mode=" + mode,
+                "--purchase.storage.directory=" + directory,
+                "--purchase.storage.write-delay=" + writeDelay,
+                "--purchase.outbox.relay-enabled=false");
+        purchaseService = context.getBean(PurchaseService.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Purchase createPurchase() {
+        return purchaseService.createPurchase(newPurchase())
+                .block();
+    }
+
+    @Benchmark
+    public List<Purchase> createPurchases() {
+        return purchaseService.createPurchases(IntStream.range(0, BATCH_SIZE)
+                        .mapToObj(i -> newPurchase())
+                        .toList())
+                .collectList()
+                .block();
+    }
+
+    private static Purchase newPurchase() {
+        return PurchaseFactory.buildPurchase(null, IntStream.range(0, PRODUCTS_PER_PURCHASE)
+                .mapToObj(i -> PurchaseFactory.buildProduct("name" + i, "ref" + i, i + 1, BigDecimal.valueOf(310 + i, 2), null))
+                .toList());
+    }
+}
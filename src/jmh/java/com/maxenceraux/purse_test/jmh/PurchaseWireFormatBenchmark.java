@@ -0,0 +1,99 @@
+package com.maxenceraux.purse_test.jmh;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchasedProductDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the JSON and Smile wire formats of the purchase API: encoding a page of {@value #PAGE_SIZE} purchases
+ * as a response, and decoding a purchase as a creation request, with the mappers the application configures
+ * for its WebFlux codecs. The payload sizes of both formats are printed once per trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseWireFormatBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final TypeReference<List<PurchaseDTO>> PAGE_TYPE = new TypeReference<>() {
+    };
+
+    @Param({"json", "smile"})
+    public String format;
+
+    @Param({"1", "10"})
+    public int productsPerPurchase;
+
+    private ConfigurableApplicationContext context;
+    private ObjectMapper objectMapper;
+    private List<PurchaseDTO> page;
+    private byte[] pageBody;
+    private byte[] requestBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = BenchmarkApplication.start();
+        objectMapper = "smile".equals(format)
+                ? context.getBean(Jackson2ObjectMapperBuilder.class).factory(new SmileFactory()).build()
+                : context.getBean(ObjectMapper.class);
+        var purchasedProducts = IntStream.range(0, productsPerPurchase)
+                .mapToObj(i -> new PurchasedProductDTO("name" + i, "ref" + i, i % 5 + 1, BigDecimal.valueOf(310 + i, 2)))
+                .toList();
+        page = IntStream.range(0, PAGE_SIZE)
+                .mapToObj(i -> new PurchaseDTO((long) i + 1, BigDecimal.valueOf(1240, 2), "EUR", PaymentMethod.CREDIT_CARD,
+                        PaymentStatus.IN_PROGRESS, purchasedProducts))
+                .toList();
+        pageBody = objectMapper.writeValueAsBytes(page);
+        requestBody = objectMapper.writeValueAsBytes(
+                new PurchaseDTO(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, purchasedProducts));
+        System.out.printf("%n%s, %d products per purchase: page of %d purchases %d bytes, creation request %d bytes%n",
+                format, productsPerPurchase, PAGE_SIZE, pageBody.length, requestBody.length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] encodePage() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<PurchaseDTO> decodePage() throws IOException {
+        return objectMapper.readValue(pageBody, PAGE_TYPE);
+    }
+
+    @Benchmark
+    public PurchaseDTO decodeRequest() throws IOException {
+        return objectMapper.readValue(requestBody, PurchaseDTO.class);
+    }
+}
@@ -1,11 +1,16 @@
 package com.maxenceraux.purse_test;
 
+import com.maxenceraux.purse_test.config.PurchaseRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.web.reactive.config.EnableWebFlux;
 
 @SpringBootApplication
 @EnableWebFlux
+@ConfigurationPropertiesScan
+@ImportRuntimeHints(PurchaseRuntimeHints.class)
 public class PurseTestApplication {
 
 	public static void main(String[] args) {
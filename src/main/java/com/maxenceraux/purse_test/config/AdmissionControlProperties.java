@@ -0,0 +1,40 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Admission control of the purchase API: a rate limit per client, and a limit of concurrent requests adapted to the
+ * observed latency. Requests over a limit are rejected right away instead of queueing for the database.
+ *
+ * @param enabled          whether requests are checked at all
+ * @param clientRate       sustained number of requests per second allowed for each client
+ * @param clientBurst      number of requests a client may send at once above its rate
+ * @param maximumClients   number of clients whose rate is tracked, the least recently seen ones are forgotten
+ * @param initialLimit     concurrent requests allowed at startup
+ * @param minLimit         lower bound of the concurrency limit
+ * @param maxLimit         upper bound of the concurrency limit
+ * @param latencyThreshold latency above which the concurrency limit is decreased
+ * @param backoffRatio     factor applied to the concurrency limit when it is decreased
+ * @param readShare        share of the concurrency limit reads may use, the rest is kept for writes
+ * @param trustedProxies   addresses of the proxies whose client id header is trusted, any other client is
+ *                         identified by its own address
+ */
+@ConfigurationProperties("purchase.admission")
+public record AdmissionControlProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100") double clientRate,
+        @DefaultValue("200") int clientBurst,
+        @DefaultValue("10000") long maximumClients,
+        @DefaultValue("64") int initialLimit,
+        @DefaultValue("8") int minLimit,
+        @DefaultValue("512") int maxLimit,
+        @DefaultValue("250ms") Duration latencyThreshold,
+        @DefaultValue("0.9") double backoffRatio,
+        @DefaultValue("0.8") double readShare,
+        @DefaultValue Set<String> trustedProxies
+) {
+}
@@ -0,0 +1,21 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Persistence of batch purchase creations.
+ *
+ * @param chunkSize     number of purchases written with each batched statement and transaction
+ * @param chunkMaxWait  longest time a partial chunk waits for more purchases from a streaming client
+ * @param concurrency   number of chunks written concurrently
+ */
+@ConfigurationProperties("purchase.batch")
+public record BatchProperties(
+        @DefaultValue("100") int chunkSize,
+        @DefaultValue("100ms") Duration chunkMaxWait,
+        @DefaultValue("4") int concurrency
+) {
+}
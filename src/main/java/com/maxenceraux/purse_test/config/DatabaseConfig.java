@@ -1,19 +1,57 @@
 package com.maxenceraux.purse_test.config;
 
 import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Option;
+import org.springframework.boot.autoconfigure.r2dbc.ConnectionFactoryOptionsBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.H2Dialect;
 import org.springframework.r2dbc.connection.init.ConnectionFactoryInitializer;
-import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+
+import java.io.IOException;
 
 @Configuration
 public class DatabaseConfig {
+
+    private static final String FILE_DATABASE_NAME = "purchasedb";
+
+    /**
+     * H2 settings added to the database url, separated by semicolons.
+     */
+    private static final Option<String> H2_OPTIONS = Option.valueOf("options");
+
     @Bean
-    ConnectionFactoryInitializer initializer(ConnectionFactory connectionFactory) {
+    ConnectionFactoryInitializer initializer(ConnectionFactory connectionFactory) throws IOException {
         ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
         initializer.setConnectionFactory(connectionFactory);
-        initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("schema.sql")));
+        initializer.setDatabasePopulator(new VersionedMigrationPopulator("classpath:db/migration"));
         return initializer;
     }
+
+    @Bean
+    R2dbcCustomConversions r2dbcCustomConversions() {
+        return R2dbcCustomConversions.of(H2Dialect.INSTANCE, MoneyConverters.all());
+    }
+
+    /**
+     * Opens the database from the files of {@code purchase.storage.directory} instead of {@code spring.r2dbc.url}
+     * when the FILE storage mode is selected. Migrations already applied to the files are not run again.
+     */
+    @Bean
+    ConnectionFactoryOptionsBuilderCustomizer storageModeCustomizer(StorageProperties storageProperties) {
+        return builder -> {
+            if (storageProperties.mode() != StorageProperties.Mode.FILE) {
+                return;
+            }
+            builder.option(ConnectionFactoryOptions.PROTOCOL, "file")
+                    .option(ConnectionFactoryOptions.DATABASE, storageProperties.directory()
+                            .resolve(FILE_DATABASE_NAME)
+                            .toAbsolutePath()
+                            .toString())
+                    .option(H2_OPTIONS, "CACHE_SIZE=" + storageProperties.cacheSize().toKilobytes()
+                            + ";WRITE_DELAY=" + storageProperties.writeDelay().toMillis());
+        };
+    }
 }
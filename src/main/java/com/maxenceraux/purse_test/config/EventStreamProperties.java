@@ -0,0 +1,19 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Server-sent event streams of purchase changes.
+ *
+ * @param bufferSize        number of events kept for a firehose subscriber that does not keep up, the oldest are dropped
+ * @param heartbeatInterval time between comments sent on idle streams, so that proxies keep the connection open
+ */
+@ConfigurationProperties("purchase.events")
+public record EventStreamProperties(
+        @DefaultValue("256") int bufferSize,
+        @DefaultValue("15s") Duration heartbeatInterval
+) {
+}
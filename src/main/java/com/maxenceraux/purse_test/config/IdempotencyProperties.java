@@ -0,0 +1,29 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Deduplication of purchase creations sent with an {@code Idempotency-Key} header.
+ *
+ * @param maximumSize maximum number of keys kept in memory
+ * @param timeToLive  time during which a key returns the purchase it created instead of creating another one
+ * @param persisted   whether keys are also stored in the IDEMPOTENCY_KEY table, so that they are shared between
+ *                    instances and survive restarts
+ * @param lockRetries number of times a persisted key is looked up again when it could not be claimed because the
+ *                    transaction of a concurrent claim was still running
+ * @param lockBackoff minimum delay before looking up a key again, doubled on every retry
+ * @param cleanupInterval time between two deletions of the expired persisted keys
+ */
+@ConfigurationProperties("purchase.idempotency")
+public record IdempotencyProperties(
+        @DefaultValue("10000") long maximumSize,
+        @DefaultValue("24h") Duration timeToLive,
+        @DefaultValue("false") boolean persisted,
+        @DefaultValue("5") int lockRetries,
+        @DefaultValue("100ms") Duration lockBackoff,
+        @DefaultValue("1h") Duration cleanupInterval
+) {
+}
@@ -0,0 +1,19 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Batching of concurrent purchase lookups by id into a single query.
+ *
+ * @param window       longest time a lookup waits for others to join its batch, zero disables batching
+ * @param maxBatchSize number of lookups after which a batch is sent without waiting for the window to end
+ */
+@ConfigurationProperties("purchase.lookup-batching")
+public record LookupBatchingProperties(
+        @DefaultValue("200us") Duration window,
+        @DefaultValue("100") int maxBatchSize
+) {
+}
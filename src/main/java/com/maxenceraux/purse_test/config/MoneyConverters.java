@@ -0,0 +1,39 @@
+package com.maxenceraux.purse_test.config;
+
+import com.maxenceraux.purse_test.model.Money;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.util.List;
+
+/**
+ * Maps {@link Money} to the BIGINT columns holding its minor units.
+ */
+final class MoneyConverters {
+
+    private MoneyConverters() {
+    }
+
+    static List<Converter<?, ?>> all() {
+        return List.of(new MoneyToLong(), new LongToMoney());
+    }
+
+    @WritingConverter
+    static final class MoneyToLong implements Converter<Money, Long> {
+
+        @Override
+        public Long convert(Money source) {
+            return source.minorUnits();
+        }
+    }
+
+    @ReadingConverter
+    static final class LongToMoney implements Converter<Long, Money> {
+
+        @Override
+        public Money convert(Long source) {
+            return new Money(source);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.maxenceraux.purse_test.config;
+
+import com.maxenceraux.purse_test.service.LoggingPurchaseEventSink;
+import com.maxenceraux.purse_test.service.PurchaseEventSink;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class OutboxConfig {
+
+    /**
+     * Default sink of the outbox relay. Another sink replaces it by being declared {@code @Primary}.
+     */
+    @Bean
+    PurchaseEventSink purchaseEventSink() {
+        return new LoggingPurchaseEventSink();
+    }
+}
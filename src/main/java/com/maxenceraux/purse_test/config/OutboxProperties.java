@@ -0,0 +1,23 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Relay of the purchase events written to the outbox.
+ *
+ * @param relayEnabled whether the outbox is drained in the background, events are written to it regardless
+ * @param pollInterval time between two reads of the outbox, when the previous one did not fill a batch
+ * @param batchSize    maximum number of events read at once
+ * @param concurrency  maximum number of purchases whose events are sent at the same time
+ */
+@ConfigurationProperties("purchase.outbox")
+public record OutboxProperties(
+        @DefaultValue("true") boolean relayEnabled,
+        @DefaultValue("200ms") Duration pollInterval,
+        @DefaultValue("100") int batchSize,
+        @DefaultValue("8") int concurrency
+) {
+}
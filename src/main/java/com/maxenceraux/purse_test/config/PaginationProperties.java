@@ -0,0 +1,23 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Page sizes of the keyset paginated purchase listing.
+ *
+ * @param defaultLimit   page size used when the client does not provide one
+ * @param maxLimit       upper bound applied to the page size requested by the client
+ * @param streamPageSize number of purchases read per query when streaming every purchase
+ */
+@ConfigurationProperties("purchase.pagination")
+public record PaginationProperties(
+        @DefaultValue("100") int defaultLimit,
+        @DefaultValue("1000") int maxLimit,
+        @DefaultValue("100") int streamPageSize
+) {
+
+    public int limit(Integer requestedLimit) {
+        return requestedLimit == null ? defaultLimit : Math.min(requestedLimit, maxLimit);
+    }
+}
@@ -0,0 +1,20 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * In-process cache of purchases looked up by id.
+ *
+ * @param maximumSize maximum number of purchases kept
+ * @param timeToLive  time after which a cached purchase is loaded again, bounding how stale it can be
+ *                    when updated by another instance
+ */
+@ConfigurationProperties("purchase.cache")
+public record PurchaseCacheProperties(
+        @DefaultValue("10000") long maximumSize,
+        @DefaultValue("30s") Duration timeToLive
+) {
+}
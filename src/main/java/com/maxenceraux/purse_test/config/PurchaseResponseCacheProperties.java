@@ -0,0 +1,16 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * In-process cache of the JSON responses of captured purchases, which can no longer change.
+ *
+ * @param maximumSize maximum total size of the cached responses
+ */
+@ConfigurationProperties("purchase.response-cache")
+public record PurchaseResponseCacheProperties(
+        @DefaultValue("64MB") DataSize maximumSize
+) {
+}
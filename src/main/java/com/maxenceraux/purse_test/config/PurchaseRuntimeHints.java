@@ -0,0 +1,56 @@
+package com.maxenceraux.purse_test.config;
+
+import com.maxenceraux.purse_test.model.IdempotencyKey;
+import com.maxenceraux.purse_test.model.Money;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseBatchResultDTO;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchaseEventDTO;
+import com.maxenceraux.purse_test.model.PurchaseOutboxEvent;
+import com.maxenceraux.purse_test.model.PurchaseStatisticsDTO;
+import com.maxenceraux.purse_test.model.PurchaseTotals;
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import com.maxenceraux.purse_test.model.PurchasedProductDTO;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reflection and resource hints for the parts of the application that AOT processing cannot infer from the bean
+ * definitions, needed by a native image:
+ * <ul>
+ *     <li>the R2DBC entities and the rows read into objects, instantiated and populated reflectively by Spring Data</li>
+ *     <li>the DTOs, read and written by Jackson, including the ones encoded outside of a controller method signature</li>
+ *     <li>the SQL migrations, listed from the classpath at startup</li>
+ * </ul>
+ */
+public class PurchaseRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final List<Class<?>> ENTITIES = List.of(
+            Purchase.class,
+            PurchasedProduct.class,
+            PurchaseTotals.class,
+            PurchaseOutboxEvent.class,
+            IdempotencyKey.class,
+            Money.class);
+
+    private static final List<Class<?>> DTOS = List.of(
+            PurchaseDTO.class,
+            PurchasedProductDTO.class,
+            PurchaseBatchResultDTO.class,
+            PurchaseEventDTO.class,
+            PurchaseStatisticsDTO.class,
+            PurchaseStatisticsDTO.Totals.class);
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        Stream.concat(ENTITIES.stream(), DTOS.stream()).forEach(type -> hints.reflection().registerType(type,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                MemberCategory.INVOKE_DECLARED_METHODS,
+                MemberCategory.DECLARED_FIELDS));
+        hints.resources().registerPattern("db/migration/*.sql");
+    }
+}
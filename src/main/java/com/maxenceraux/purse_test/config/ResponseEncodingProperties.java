@@ -0,0 +1,17 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Encoding of the purchase lists returned as JSON arrays.
+ *
+ * @param chunkSize size from which the purchases encoded so far are written to the response, so that the memory used
+ *                  by a response is bounded by the size of a chunk, whatever the number of purchases
+ */
+@ConfigurationProperties("purchase.response-encoding")
+public record ResponseEncodingProperties(
+        @DefaultValue("32KB") DataSize chunkSize
+) {
+}
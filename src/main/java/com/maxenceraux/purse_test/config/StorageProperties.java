@@ -0,0 +1,32 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Where the purchase database is kept.
+ *
+ * @param mode       MEMORY keeps the database in memory, so that it is lost on restart,
+ *                   FILE keeps it in files of {@code directory}, so that purchases survive restarts and crashes
+ * @param directory  directory of the database files in FILE mode
+ * @param cacheSize  memory used to cache the pages of the database files
+ * @param writeDelay maximum time between a commit and its write to the database files: a crash loses the purchases
+ *                   committed within this delay, while a longer delay groups the writes of several commits
+ */
+@ConfigurationProperties("purchase.storage")
+public record StorageProperties(
+        @DefaultValue("MEMORY") Mode mode,
+        @DefaultValue("./data") Path directory,
+        @DefaultValue("64MB") DataSize cacheSize,
+        @DefaultValue("0ms") Duration writeDelay
+) {
+
+    public enum Mode {
+        MEMORY,
+        FILE
+    }
+}
@@ -0,0 +1,21 @@
+package com.maxenceraux.purse_test.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Retries of purchase updates that lost an optimistic concurrency race.
+ *
+ * @param maxAttempts number of retries before giving up with a conflict
+ * @param minBackoff  delay before the first retry, doubled on each attempt
+ * @param maxBackoff  upper bound of the delay between two retries
+ */
+@ConfigurationProperties("purchase.update.retry")
+public record UpdateRetryProperties(
+        @DefaultValue("3") int maxAttempts,
+        @DefaultValue("10ms") Duration minBackoff,
+        @DefaultValue("100ms") Duration maxBackoff
+) {
+}
@@ -0,0 +1,82 @@
+package com.maxenceraux.purse_test.config;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Result;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.r2dbc.connection.init.DatabasePopulator;
+import org.springframework.r2dbc.connection.init.ScriptUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the SQL migrations of a location, named {@code V<version>__<description>.sql}, in version order.
+ * Applied versions are recorded in SCHEMA_VERSION, so that each migration runs once per database
+ * and a schema change is made by adding a migration rather than editing an applied one.
+ */
+class VersionedMigrationPopulator implements DatabasePopulator {
+
+    private static final Pattern MIGRATION_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final String CREATE_SCHEMA_VERSION = """
+            CREATE TABLE IF NOT EXISTS SCHEMA_VERSION (
+                version INT NOT NULL,
+                description VARCHAR(255) NOT NULL,
+                installed_on TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                PRIMARY KEY (version)
+            )
+            """;
+    private static final String CURRENT_VERSION = "SELECT MAX(version) AS version FROM SCHEMA_VERSION";
+    private static final String RECORD_VERSION = "INSERT INTO SCHEMA_VERSION (version, description) VALUES ($1, $2)";
+
+    private final List<Migration> migrations;
+
+    VersionedMigrationPopulator(String location) throws IOException {
+        var migrations = new ArrayList<Migration>();
+        for (var script : new PathMatchingResourcePatternResolver().getResources(location + "/V*__*.sql")) {
+            var name = MIGRATION_NAME.matcher(script.getFilename());
+            if (!name.matches()) {
+                throw new IllegalStateException("Invalid migration name " + script.getFilename());
+            }
+            migrations.add(new Migration(Integer.parseInt(name.group(1)), name.group(2).replace('_', ' '), script));
+        }
+        migrations.sort(Comparator.comparingInt(Migration::version));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version() == migrations.get(i - 1).version()) {
+                throw new IllegalStateException("Several migrations for version " + migrations.get(i).version());
+            }
+        }
+        this.migrations = List.copyOf(migrations);
+    }
+
+    @Override
+    public Mono<Void> populate(Connection connection) {
+        return execute(connection.createStatement(CREATE_SCHEMA_VERSION).execute())
+                .then(Mono.from(connection.createStatement(CURRENT_VERSION).execute())
+                        .flatMap(result -> Mono.from(result.map(row -> Optional.ofNullable(row.get("version", Integer.class))))))
+                .flatMapMany(currentVersion -> Flux.fromIterable(migrations)
+                        .filter(migration -> migration.version() > currentVersion.orElse(0)))
+                .concatMap(migration -> ScriptUtils.executeSqlScript(connection, migration.script())
+                        .then(execute(connection.createStatement(RECORD_VERSION)
+                                .bind(0, migration.version())
+                                .bind(1, migration.description())
+                                .execute())))
+                .then();
+    }
+
+    private static Mono<Void> execute(Publisher<? extends Result> results) {
+        return Flux.from(results)
+                .flatMap(Result::getRowsUpdated)
+                .then();
+    }
+
+    private record Migration(int version, String description, Resource script) {
+    }
+}
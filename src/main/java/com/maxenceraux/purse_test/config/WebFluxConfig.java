@@ -0,0 +1,45 @@
+package com.maxenceraux.purse_test.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.maxenceraux.purse_test.controller.PurchaseArrayEncoder;
+import com.maxenceraux.purse_test.controller.PurchaseMediaTypes;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+@Configuration
+public class WebFluxConfig implements WebFluxConfigurer {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper smileMapper;
+    private final ResponseEncodingProperties responseEncodingProperties;
+
+    public WebFluxConfig(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder objectMapperBuilder,
+                         ResponseEncodingProperties responseEncodingProperties) {
+        this.objectMapper = objectMapper;
+        // configured as the JSON mapper, with the Smile format
+        this.smileMapper = objectMapperBuilder.factory(new SmileFactory()).build();
+        this.responseEncodingProperties = responseEncodingProperties;
+    }
+
+    /**
+     * Purchases served as JSON or Smile arrays are encoded by {@link PurchaseArrayEncoder}, registered ahead of the
+     * default Jackson encoders, which still encode every other type and the streams. Smile requests and responses,
+     * single or streamed, use the same Jackson configuration as JSON.
+     */
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        int chunkSize = (int) responseEncodingProperties.chunkSize().toBytes();
+        configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileMapper,
+                PurchaseMediaTypes.SMILE, PurchaseMediaTypes.SMILE_STREAM));
+        configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smileMapper,
+                PurchaseMediaTypes.SMILE, PurchaseMediaTypes.SMILE_STREAM));
+        configurer.customCodecs().register(new PurchaseArrayEncoder(objectMapper, MediaType.APPLICATION_JSON, chunkSize));
+        configurer.customCodecs().register(new PurchaseArrayEncoder(smileMapper, PurchaseMediaTypes.SMILE, chunkSize));
+    }
+}
@@ -0,0 +1,83 @@
+package com.maxenceraux.purse_test.controller;
+
+import com.maxenceraux.purse_test.config.AdmissionControlProperties;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limit of concurrent requests adapted with additive increase, multiplicative decrease: it grows by one over about
+ * {@code limit} fast requests while it is in use, and shrinks by {@code backoffRatio} on a slow or failed one.
+ * It shrinks at most once per window: the requests admitted before a decrease saw the load that caused it, so only
+ * a request admitted after the last decrease may decrease the limit again.
+ */
+final class AdaptiveConcurrencyLimit {
+
+	private static final long NEVER = Long.MIN_VALUE;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyThresholdNanos;
+	private final double backoffRatio;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong limitBits;
+	private final AtomicLong decreasedAtNanos = new AtomicLong(NEVER);
+
+	AdaptiveConcurrencyLimit(AdmissionControlProperties properties) {
+		this.minLimit = properties.minLimit();
+		this.maxLimit = properties.maxLimit();
+		this.latencyThresholdNanos = properties.latencyThreshold().toNanos();
+		this.backoffRatio = properties.backoffRatio();
+		this.limitBits = new AtomicLong(Double.doubleToRawLongBits(properties.initialLimit()));
+	}
+
+	/**
+	 * Admits a request when fewer requests than the given share of the limit are in flight.
+	 * An admitted request must be {@link #release released}.
+	 */
+	boolean tryAcquire(double share) {
+		int capacity = Math.max(1, (int) (limit() * share));
+		while (true) {
+			int current = inFlight.get();
+			if (current >= capacity) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Releases an admitted request, adapting the limit to its outcome. No outcome is recorded for unmeasured requests,
+	 * such as cancelled ones or those whose latency depends on the amount of data streamed rather than on the load.
+	 */
+	void release(long admittedNanos, long releasedNanos, boolean failed, boolean unmeasured) {
+		int current = inFlight.getAndDecrement();
+		if (unmeasured) {
+			return;
+		}
+		if (failed || releasedNanos - admittedNanos > latencyThresholdNanos) {
+			long decreasedAt = decreasedAtNanos.get();
+			if ((decreasedAt == NEVER || admittedNanos - decreasedAt > 0)
+					&& decreasedAtNanos.compareAndSet(decreasedAt, releasedNanos)) {
+				limitBits.getAndUpdate(bits -> Double.doubleToRawLongBits(
+						Math.max(minLimit, Double.longBitsToDouble(bits) * backoffRatio)));
+			}
+		} else {
+			limitBits.getAndUpdate(bits -> {
+				double limit = Double.longBitsToDouble(bits);
+				// an idle limit does not prove it could sustain more load
+				return current * 2 < limit ? bits : Double.doubleToRawLongBits(Math.min(maxLimit, limit + 1 / limit));
+			});
+		}
+	}
+
+	double limit() {
+		return Double.longBitsToDouble(limitBits.get());
+	}
+
+	int inFlight() {
+		return inFlight.get();
+	}
+}
@@ -0,0 +1,146 @@
+package com.maxenceraux.purse_test.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.maxenceraux.purse_test.config.AdmissionControlProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control in front of the purchase API, so that the requests admitted keep a stable latency when
+ * more are sent than the database can serve.
+ * <p>
+ * Each client, identified by its address, has its own token bucket. The {@value #CLIENT_ID_HEADER} header is only
+ * trusted on requests coming from one of the {@code trustedProxies}, so that a client cannot pick its bucket:
+ * requests over its rate are rejected with 429. Admitted requests then share an {@link AdaptiveConcurrencyLimit},
+ * of which reads may only use {@code readShare}, so that writes are still admitted when reads saturate it:
+ * requests over the limit are rejected with 503. Both answers carry a Retry-After header.
+ * Event streams are rate limited only, as they stay open by design. Streamed responses and batch creations hold
+ * a share of the limit like other requests, but their latency grows with the data sent rather than with the load,
+ * so it is not used to adapt the limit.
+ * <p>
+ * Rejections are counted in {@code purchase.admission.rejected}, tagged with the {@code reason} and the request
+ * {@code priority}, the limit and the requests in flight are published as {@code purchase.admission.limit}
+ * and {@code purchase.admission.in.flight}.
+ */
+@Component
+public class AdmissionControlFilter implements WebFilter {
+
+	static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+	private static final String API_PATH = "/api/purchase";
+
+	private static final List<MediaType> STREAMING_MEDIA_TYPES = List.of(MediaType.APPLICATION_NDJSON, PurchaseMediaTypes.SMILE_STREAM);
+
+	private final AdmissionControlProperties properties;
+	private final Cache<String, TokenBucket> buckets;
+	private final AdaptiveConcurrencyLimit concurrencyLimit;
+	private final Counter readsRateLimited;
+	private final Counter writesRateLimited;
+	private final Counter readsShed;
+	private final Counter writesShed;
+
+	public AdmissionControlFilter(AdmissionControlProperties properties, MeterRegistry meterRegistry) {
+		this.properties = properties;
+		this.buckets = Caffeine.newBuilder()
+				.maximumSize(properties.maximumClients())
+				// an idle client's bucket is full again after burst / rate, it can be recreated as is afterwards
+				.expireAfterAccess(Duration.ofNanos((long) (properties.clientBurst() / properties.clientRate() * 1e9)).plusSeconds(1))
+				.build();
+		this.concurrencyLimit = new AdaptiveConcurrencyLimit(properties);
+		this.readsRateLimited = rejected(meterRegistry, "rate", "read");
+		this.writesRateLimited = rejected(meterRegistry, "rate", "write");
+		this.readsShed = rejected(meterRegistry, "concurrency", "read");
+		this.writesShed = rejected(meterRegistry, "concurrency", "write");
+		Gauge.builder("purchase.admission.limit", concurrencyLimit, AdaptiveConcurrencyLimit::limit)
+				.register(meterRegistry);
+		Gauge.builder("purchase.admission.in.flight", concurrencyLimit, AdaptiveConcurrencyLimit::inFlight)
+				.register(meterRegistry);
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		var request = exchange.getRequest();
+		var path = request.getPath().pathWithinApplication().value();
+		if (!properties.enabled() || !path.startsWith(API_PATH)) {
+			return chain.filter(exchange);
+		}
+		boolean write = !HttpMethod.GET.equals(request.getMethod()) && !HttpMethod.HEAD.equals(request.getMethod());
+
+		long start = System.nanoTime();
+		var bucket = buckets.get(clientId(request), clientId -> new TokenBucket(properties.clientRate(), properties.clientBurst(), start));
+		long waitNanos = bucket.tryAcquire(start);
+		if (waitNanos > 0) {
+			(write ? writesRateLimited : readsRateLimited).increment();
+			return reject(exchange, HttpStatus.TOO_MANY_REQUESTS, waitNanos);
+		}
+
+		if (path.endsWith("/events")) {
+			return chain.filter(exchange);
+		}
+		if (!concurrencyLimit.tryAcquire(write ? 1 : properties.readShare())) {
+			(write ? writesShed : readsShed).increment();
+			return reject(exchange, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+		}
+		boolean streamed = isStreamed(request, path);
+		return chain.filter(exchange)
+				.doFinally(signal -> {
+					var status = exchange.getResponse().getStatusCode();
+					concurrencyLimit.release(start, System.nanoTime(),
+							signal == SignalType.ON_ERROR || status != null && status.is5xxServerError(),
+							streamed || signal == SignalType.CANCEL);
+				});
+	}
+
+	private static boolean isStreamed(ServerHttpRequest request, String path) {
+		return path.endsWith("/batch") || request.getHeaders().getAccept().stream()
+				.anyMatch(mediaType -> STREAMING_MEDIA_TYPES.stream().anyMatch(mediaType::equalsTypeAndSubtype));
+	}
+
+	private String clientId(ServerHttpRequest request) {
+		var remoteAddress = request.getRemoteAddress();
+		if (remoteAddress == null) {
+			return "";
+		}
+		var address = remoteAddress.isUnresolved() ? remoteAddress.getHostString() : remoteAddress.getAddress().getHostAddress();
+		if (properties.trustedProxies().contains(address)) {
+			var clientId = request.getHeaders().getFirst(CLIENT_ID_HEADER);
+			if (clientId != null) {
+				return clientId;
+			}
+		}
+		return address;
+	}
+
+	private static Mono<Void> reject(ServerWebExchange exchange, HttpStatus status, long retryAfterNanos) {
+		var response = exchange.getResponse();
+		response.setStatusCode(status);
+		// Retry-After is in whole seconds, rounded up so that a client honouring it is admitted
+		response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+				Long.toString(Math.max(1, (retryAfterNanos + 999_999_999L) / 1_000_000_000L)));
+		return response.setComplete();
+	}
+
+	private static Counter rejected(MeterRegistry meterRegistry, String reason, String priority) {
+		return Counter.builder("purchase.admission.rejected")
+				.tag("reason", reason)
+				.tag("priority", priority)
+				.register(meterRegistry);
+	}
+}
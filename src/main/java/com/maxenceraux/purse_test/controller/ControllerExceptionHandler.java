@@ -1,9 +1,13 @@
 package com.maxenceraux.purse_test.controller;
 
+import com.maxenceraux.purse_test.exception.AmountOutOfRangeException;
+import com.maxenceraux.purse_test.exception.ConcurrentPurchaseUpdateException;
 import com.maxenceraux.purse_test.exception.MissingPurchaseException;
 import com.maxenceraux.purse_test.exception.UnsupportedMethodChangeException;
 import com.maxenceraux.purse_test.exception.UnsupportedStatusChangeException;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.swagger.v3.oas.annotations.Hidden;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -13,24 +17,50 @@ import reactor.core.publisher.Mono;
 
 @Hidden
 @ControllerAdvice
+@RequiredArgsConstructor
 public class ControllerExceptionHandler {
 
+    private final MeterRegistry meterRegistry;
+
     @ExceptionHandler(UnsupportedStatusChangeException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Mono<ResponseEntity<String>> handleUserNotFound(UnsupportedStatusChangeException ex) {
+        count(ex);
         return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage()));
     }
 
     @ExceptionHandler(MissingPurchaseException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public Mono<ResponseEntity<String>> handleMissingPayment(MissingPurchaseException ex) {
+        count(ex);
         return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage()));
     }
 
     @ExceptionHandler(UnsupportedMethodChangeException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Mono<ResponseEntity<String>> handleUnsupportedPaymentChange(UnsupportedMethodChangeException ex) {
+        count(ex);
+        return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage()));
+    }
+
+    @ExceptionHandler(ConcurrentPurchaseUpdateException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Mono<ResponseEntity<String>> handleConcurrentUpdate(ConcurrentPurchaseUpdateException ex) {
+        count(ex);
+        return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage()));
+    }
+
+    @ExceptionHandler(AmountOutOfRangeException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Mono<ResponseEntity<String>> handleAmountOutOfRange(AmountOutOfRangeException ex) {
+        count(ex);
         return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage()));
     }
 
-}
\ No newline at end of file
+    /**
+     * Counts the handled exceptions in {@code purchase.errors}, tagged with their type.
+     */
+    private void count(Exception ex) {
+        meterRegistry.counter("purchase.errors", "exception", ex.getClass().getSimpleName()).increment();
+    }
+}
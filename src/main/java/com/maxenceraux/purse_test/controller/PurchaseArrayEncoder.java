@@ -0,0 +1,163 @@
+package com.maxenceraux.purse_test.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Writes purchases as an array while they are emitted, in the format of the given Jackson mapper (JSON or Smile),
+ * packed into buffers of about {@code chunkSize} bytes allocated from the response buffer factory,
+ * which pools them on Netty.
+ * <p>
+ * A buffer is emitted, and written to the response, as soon as it holds {@code chunkSize} bytes, so that a response
+ * holds at most one buffer being filled whatever the number of purchases, while a page of small purchases is written
+ * with a few buffers rather than one per purchase. A single purchase is encoded as an object.
+ */
+public class PurchaseArrayEncoder extends AbstractEncoder<PurchaseDTO> {
+
+    private static final int VALUE_CAPACITY = 1024;
+
+    private final ObjectWriter writer;
+    private final int chunkSize;
+
+    public PurchaseArrayEncoder(ObjectMapper objectMapper, MimeType mimeType, int chunkSize) {
+        super(mimeType);
+        this.writer = objectMapper.writerFor(PurchaseDTO.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        return PurchaseDTO.class.isAssignableFrom(elementType.toClass()) && super.canEncode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<? extends PurchaseDTO> inputStream, DataBufferFactory bufferFactory,
+                                   ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        if (inputStream instanceof Mono) {
+            return Mono.from(inputStream)
+                    .map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints))
+                    .flux();
+        }
+        return Flux.defer(() -> {
+            var chunks = new Chunks(bufferFactory);
+            return Flux.<PurchaseDTO>from(inputStream)
+                    .<DataBuffer>handle((value, sink) -> {
+                        var chunk = chunks.append(value);
+                        if (chunk != null) {
+                            sink.next(chunk);
+                        }
+                    })
+                    .concatWith(Mono.fromSupplier(chunks::end))
+                    .doFinally(signal -> chunks.release())
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    @Override
+    public DataBuffer encodeValue(PurchaseDTO value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                  MimeType mimeType, Map<String, Object> hints) {
+        var buffer = bufferFactory.allocateBuffer(VALUE_CAPACITY);
+        try {
+            writer.writeValue(buffer.asOutputStream(), value);
+            return buffer;
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new EncodingException("Could not encode purchase " + value.getId(), e);
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    /**
+     * The array of a response, written by a single generator into the buffer being filled.
+     */
+    private final class Chunks extends OutputStream {
+
+        private final DataBufferFactory bufferFactory;
+        private JsonGenerator generator;
+        private DataBuffer current;
+
+        private Chunks(DataBufferFactory bufferFactory) {
+            this.bufferFactory = bufferFactory;
+        }
+
+        /**
+         * @return the buffer holding the purchase once it has reached the chunk size, or null while it can take more
+         */
+        DataBuffer append(PurchaseDTO value) {
+            try {
+                writer.writeValue(generator(), value);
+                generator.flush();
+            } catch (IOException e) {
+                throw new EncodingException("Could not encode purchase " + value.getId(), e);
+            }
+            return current.readableByteCount() >= chunkSize ? take() : null;
+        }
+
+        DataBuffer end() {
+            try {
+                generator().writeEndArray();
+                generator.close();
+            } catch (IOException e) {
+                throw new EncodingException("Could not end the purchase array", e);
+            }
+            return take();
+        }
+
+        void release() {
+            if (current != null) {
+                DataBufferUtils.release(current);
+                current = null;
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            buffer().write((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            buffer().write(bytes, offset, length);
+        }
+
+        private JsonGenerator generator() throws IOException {
+            if (generator == null) {
+                generator = writer.createGenerator(this);
+                generator.writeStartArray();
+            }
+            return generator;
+        }
+
+        private DataBuffer buffer() {
+            if (current == null) {
+                current = bufferFactory.allocateBuffer(chunkSize);
+            }
+            return current;
+        }
+
+        private DataBuffer take() {
+            var buffer = current;
+            current = null;
+            return buffer;
+        }
+    }
+}
@@ -1,26 +1,48 @@
 package com.maxenceraux.purse_test.controller;
 
+import com.maxenceraux.purse_test.config.EventStreamProperties;
+import com.maxenceraux.purse_test.config.PaginationProperties;
+import com.maxenceraux.purse_test.mapper.PurchaseMapper;
+import com.maxenceraux.purse_test.model.Money;
 import com.maxenceraux.purse_test.model.PaymentMethod;
 import com.maxenceraux.purse_test.model.PaymentStatus;
-import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseBatchResultDTO;
 import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchaseEventDTO;
+import com.maxenceraux.purse_test.model.PurchaseSearchCriteria;
+import com.maxenceraux.purse_test.model.PurchaseStatisticsDTO;
+import com.maxenceraux.purse_test.service.PurchaseBatchService;
+import com.maxenceraux.purse_test.service.PurchaseIdempotencyService;
 import com.maxenceraux.purse_test.service.PurchaseService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.convert.ConversionService;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.Objects;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 
 @RestController
 @RequiredArgsConstructor
@@ -29,35 +51,155 @@ public class PurchaseController {
 
 	private final PurchaseService purchaseService;
 
-	private final ConversionService conversionService;
+	private final PurchaseBatchService purchaseBatchService;
 
-	@Operation(summary = "Get all purchase stored")
+	private final PurchaseIdempotencyService purchaseIdempotencyService;
+
+	private final PurchaseResponseCache purchaseResponseCache;
+
+	private final PurchaseMapper purchaseMapper;
+
+	private final PaginationProperties paginationProperties;
+
+	private final EventStreamProperties eventStreamProperties;
+
+	@Operation(summary = "Get a page of the purchases stored, ordered by id.")
 	@ApiResponses(value = {
 			@ApiResponse(responseCode = "200", description = "Found some purchase to return",
 					content = { @Content(mediaType = "application/json",
-							array = @ArraySchema(arraySchema = @Schema(implementation = PurchaseDTO.class))) })})
-	@GetMapping("/all")
+							array = @ArraySchema(arraySchema = @Schema(implementation = PurchaseDTO.class))),
+							@Content(mediaType = PurchaseMediaTypes.SMILE_VALUE,
+									array = @ArraySchema(arraySchema = @Schema(implementation = PurchaseDTO.class))) }),
+			@ApiResponse(responseCode = "400", description = "Invalid cursor or limit supplied",
+					content = @Content) })
+	@GetMapping(value = "/all", produces = { MediaType.APPLICATION_JSON_VALUE, PurchaseMediaTypes.SMILE_VALUE })
+	@ResponseStatus(HttpStatus.OK)
+	public Flux<PurchaseDTO> findAll(
+			@Parameter(description = "Id of the last purchase of the previous page")
+			@RequestParam(defaultValue = "0") @PositiveOrZero long after,
+			@Parameter(description = "Maximum number of purchases to return")
+			@RequestParam(required = false) @Positive Integer limit) {
+		return purchaseMapper.toDtos(purchaseService.findAllPurchases(after, paginationProperties.limit(limit)));
+	}
+
+	@Operation(summary = "Get a page of the purchases matching every filter given, ordered by id.")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Found the matching purchases",
+					content = { @Content(mediaType = "application/json",
+							array = @ArraySchema(arraySchema = @Schema(implementation = PurchaseDTO.class))),
+							@Content(mediaType = PurchaseMediaTypes.SMILE_VALUE,
+									array = @ArraySchema(arraySchema = @Schema(implementation = PurchaseDTO.class))) }),
+			@ApiResponse(responseCode = "400", description = "Invalid filter, cursor or limit supplied",
+					content = @Content) })
+	@GetMapping(value = "/search", produces = { MediaType.APPLICATION_JSON_VALUE, PurchaseMediaTypes.SMILE_VALUE })
+	@ResponseStatus(HttpStatus.OK)
+	public Flux<PurchaseDTO> search(
+			@RequestParam(required = false) PaymentStatus status,
+			@RequestParam(required = false) PaymentMethod paymentMethod,
+			@RequestParam(required = false) @Size(min = 1, max = 255) String currency,
+			@Parameter(description = "Minimum amount, inclusive, in the currency filtered on")
+			@RequestParam(required = false) @PositiveOrZero @Digits(integer = 16, fraction = 3) BigDecimal minAmount,
+			@Parameter(description = "Maximum amount, inclusive, in the currency filtered on")
+			@RequestParam(required = false) @PositiveOrZero @Digits(integer = 16, fraction = 3) BigDecimal maxAmount,
+			@Parameter(description = "Reference of one of the purchased products")
+			@RequestParam(required = false) @Size(min = 1, max = 255) String productReference,
+			@Parameter(description = "Id of the last purchase of the previous page")
+			@RequestParam(defaultValue = "0") @PositiveOrZero long after,
+			@Parameter(description = "Maximum number of purchases to return")
+			@RequestParam(required = false) @Positive Integer limit) {
+		var criteria = new PurchaseSearchCriteria(status, paymentMethod, currency,
+				minAmount == null ? null : Money.of(minAmount, currency),
+				maxAmount == null ? null : Money.of(maxAmount, currency),
+				productReference);
+		return purchaseMapper.toDtos(purchaseService.searchPurchases(criteria, after, paginationProperties.limit(limit)));
+	}
+
+	@Operation(summary = "Stream all purchases stored, ordered by id, as newline delimited JSON or a Smile stream.")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Streaming the purchases",
+					content = { @Content(mediaType = "application/x-ndjson",
+							schema = @Schema(implementation = PurchaseDTO.class)),
+							@Content(mediaType = PurchaseMediaTypes.SMILE_STREAM_VALUE,
+									schema = @Schema(implementation = PurchaseDTO.class)) }),
+			@ApiResponse(responseCode = "400", description = "Invalid cursor supplied",
+					content = @Content) })
+	@GetMapping(value = "/all", produces = { MediaType.APPLICATION_NDJSON_VALUE, PurchaseMediaTypes.SMILE_STREAM_VALUE })
+	@ResponseStatus(HttpStatus.OK)
+	public Flux<PurchaseDTO> streamAll(
+			@Parameter(description = "Id of the purchase to resume the stream after")
+			@RequestParam(defaultValue = "0") @PositiveOrZero long after) {
+		return purchaseMapper.toDtos(purchaseService.findAllPurchases(after));
+	}
+
+	@Operation(summary = "Get the number and total amount of the purchases by currency, status and payment method.",
+			description = "Amounts are summed by currency.")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Computed the statistics",
+					content = { @Content(mediaType = "application/json",
+							schema = @Schema(implementation = PurchaseStatisticsDTO.class)) }) })
+	@GetMapping("/stats")
 	@ResponseStatus(HttpStatus.OK)
-	public Flux<PurchaseDTO> findAll() {
-		return purchaseService.findAllPurchases()
-				.map(purchase -> conversionService.convert(purchase, PurchaseDTO.class));
+	public Mono<PurchaseStatisticsDTO> getStatistics() {
+		return Mono.fromSupplier(purchaseService::getStatistics);
 	}
 
 	@Operation(summary = "Get a purchase from its id.")
 	@ApiResponses(value = {
 			@ApiResponse(responseCode = "200", description = "Found the purchase",
 					content = { @Content(mediaType = "application/json",
-							schema = @Schema(implementation = PurchaseDTO.class)) }),
+							schema = @Schema(implementation = PurchaseDTO.class)),
+							@Content(mediaType = PurchaseMediaTypes.SMILE_VALUE,
+									schema = @Schema(implementation = PurchaseDTO.class)) }),
+			@ApiResponse(responseCode = "304", description = "The purchase still matches the ETag supplied",
+					content = @Content),
 			@ApiResponse(responseCode = "404", description = "Purchase not found",
 					content = @Content) })
-	@GetMapping("/{id}")
-	@ResponseStatus(HttpStatus.OK)
-	public Mono<PurchaseDTO> findById(@PathVariable("id") Long id) {
-		return purchaseService.findPurchaseById(id)
-				.map(purchase -> conversionService.convert(purchase, PurchaseDTO.class));
+	@GetMapping(value = "/{id}", produces = { MediaType.APPLICATION_JSON_VALUE, PurchaseMediaTypes.SMILE_VALUE })
+	public Mono<ResponseEntity<?>> findById(@PathVariable("id") Long id, ServerHttpRequest request,
+											ServerHttpResponse response) {
+		// If-None-Match is checked against the ETag when the entity is handled, answering 304 without a body
+		if (prefersSmile(request)) {
+			return purchaseService.findPurchaseById(id)
+					.map(purchase -> ResponseEntity.ok()
+							.eTag(PurchaseResponseCache.etag(purchase, "-smile"))
+							.contentType(PurchaseMediaTypes.SMILE)
+							.varyBy(HttpHeaders.ACCEPT)
+							.body(purchaseMapper.toDto(purchase)));
+		}
+		return purchaseResponseCache.get(id, purchaseService::findPurchaseById)
+				.map(encodedPurchase -> ResponseEntity.ok()
+						.eTag(encodedPurchase.etag())
+						.contentType(MediaType.APPLICATION_JSON)
+						.varyBy(HttpHeaders.ACCEPT)
+						.body(response.bufferFactory().wrap(encodedPurchase.json())));
 	}
 
-	@Operation(summary = "Create a purchase.")
+	@Operation(summary = "Stream the changes of a purchase as server-sent events, starting with its current state.",
+			description = "The stream completes once the purchase has reached its final status.")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Streaming the purchase changes",
+					content = { @Content(mediaType = "text/event-stream",
+							schema = @Schema(implementation = PurchaseEventDTO.class)) }),
+			@ApiResponse(responseCode = "404", description = "Purchase not found",
+					content = @Content) })
+	@GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public Flux<ServerSentEvent<PurchaseEventDTO>> purchaseEvents(@PathVariable("id") Long id) {
+		return toServerSentEvents(purchaseService.purchaseEvents(id));
+	}
+
+	@Operation(summary = "Stream the changes of every purchase as server-sent events.")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Streaming the purchase changes",
+					content = { @Content(mediaType = "text/event-stream",
+							schema = @Schema(implementation = PurchaseEventDTO.class)) }) })
+	@GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public Flux<ServerSentEvent<PurchaseEventDTO>> allPurchaseEvents() {
+		return toServerSentEvents(purchaseService.allPurchaseEvents());
+	}
+
+	@Operation(summary = "Create a purchase.",
+			description = "A request sent again with the same Idempotency-Key returns the purchase the key created "
+					+ "instead of creating another one.")
 	@ApiResponses(value = {
 			@ApiResponse(responseCode = "201", description = "Created the purchase",
 					content = { @Content(mediaType = "application/json",
@@ -66,9 +208,37 @@ public class PurchaseController {
 					content = @Content) })
 	@PostMapping
 	@ResponseStatus(HttpStatus.CREATED)
-	public Mono<PurchaseDTO> createOne(@RequestBody @Valid @NotNull PurchaseDTO purchase) {
-		return purchaseService.createPurchase(Objects.requireNonNull(conversionService.convert(purchase, Purchase.class)))
-				.map(savedPurchase -> conversionService.convert(savedPurchase, PurchaseDTO.class));
+	public Mono<PurchaseDTO> createOne(
+			@Parameter(description = "Unique key of the creation, for it to be retried safely")
+			@RequestHeader(name = "Idempotency-Key", required = false) @Size(min = 1, max = 255) String idempotencyKey,
+			@RequestBody @Valid @NotNull PurchaseDTO purchase) {
+		var purchaseToCreate = purchaseMapper.toPurchase(purchase);
+		var createdPurchase = idempotencyKey == null
+				? purchaseService.createPurchase(purchaseToCreate)
+				: purchaseIdempotencyService.createPurchase(idempotencyKey, purchaseToCreate);
+		return createdPurchase
+				.map(purchaseMapper::toDto);
+	}
+
+	@Operation(summary = "Create several purchases, sent as a JSON array, as newline delimited JSON or as Smile.",
+			description = "Every purchase is validated and saved on its own: a result holding either the created id "
+					+ "or the validation errors is returned for each of them, in the order they were sent.")
+	@ApiResponses(value = {
+			@ApiResponse(responseCode = "200", description = "Processed the purchases",
+					content = { @Content(mediaType = "application/json",
+							array = @ArraySchema(arraySchema = @Schema(implementation = PurchaseBatchResultDTO.class))),
+							@Content(mediaType = "application/x-ndjson",
+									schema = @Schema(implementation = PurchaseBatchResultDTO.class)),
+							@Content(mediaType = PurchaseMediaTypes.SMILE_STREAM_VALUE,
+									schema = @Schema(implementation = PurchaseBatchResultDTO.class)) }) })
+	@PostMapping(value = "/batch",
+			consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+					PurchaseMediaTypes.SMILE_VALUE, PurchaseMediaTypes.SMILE_STREAM_VALUE },
+			produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+					PurchaseMediaTypes.SMILE_STREAM_VALUE })
+	@ResponseStatus(HttpStatus.OK)
+	public Flux<PurchaseBatchResultDTO> createBatch(@RequestBody Flux<PurchaseDTO> purchases) {
+		return purchaseBatchService.createPurchases(purchases);
 	}
 
 	@Operation(summary = "Update a purchase status.")
@@ -84,7 +254,7 @@ public class PurchaseController {
 	@ResponseStatus(HttpStatus.OK)
 	public Mono<PurchaseDTO> updateStatus(@PathVariable Long id, @RequestBody PaymentStatus status) {
 		return purchaseService.updateStatus(id, status)
-				.map(purchase -> conversionService.convert(purchase, PurchaseDTO.class));
+				.map(purchaseMapper::toDto);
 	}
 
 	@Operation(summary = "Update a purchase payment method.")
@@ -100,7 +270,43 @@ public class PurchaseController {
 	@ResponseStatus(HttpStatus.OK)
 	public Mono<PurchaseDTO> changePaymentMethod(@PathVariable Long id, @RequestBody PaymentMethod paymentMethod) {
 		return purchaseService.changePaymentMethod(id, paymentMethod)
-				.map(purchase -> conversionService.convert(purchase, PurchaseDTO.class));
+				.map(purchaseMapper::toDto);
+	}
+
+	/**
+	 * Whether the most preferred acceptable type matching a format of the purchase is Smile rather than JSON,
+	 * the acceptable types being ranked by quality then specificity, as content negotiation does,
+	 * so that clients not asking for Smile keep the cached JSON responses.
+	 */
+	private static boolean prefersSmile(ServerHttpRequest request) {
+		var acceptableTypes = new ArrayList<>(request.getHeaders().getAccept());
+		MimeTypeUtils.sortBySpecificity(acceptableTypes);
+		for (MediaType acceptable : acceptableTypes) {
+			if (acceptable.getQualityValue() == 0) {
+				continue;
+			}
+			if (acceptable.includes(MediaType.APPLICATION_JSON)) {
+				return false;
+			}
+			if (acceptable.includes(PurchaseMediaTypes.SMILE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Names each event after its type, and sends a heartbeat comment on idle streams until the events complete.
+	 */
+	private Flux<ServerSentEvent<PurchaseEventDTO>> toServerSentEvents(Flux<PurchaseEventDTO> events) {
+		return events
+				.map(event -> ServerSentEvent.builder(event)
+						.event(event.getType().name())
+						.build())
+				.publish(serverSentEvents -> serverSentEvents.mergeWith(
+						Flux.interval(eventStreamProperties.heartbeatInterval())
+								.map(i -> ServerSentEvent.<PurchaseEventDTO>builder().comment("heartbeat").build())
+								.takeUntilOther(serverSentEvents.ignoreElements())));
 	}
 
 }
@@ -0,0 +1,22 @@
+package com.maxenceraux.purse_test.controller;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Binary media types of the purchase API, for internal callers: Smile is a binary encoding of the JSON data model,
+ * so the DTOs and their validation are the same as in JSON, with smaller payloads and faster parsing.
+ */
+public final class PurchaseMediaTypes {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType SMILE = MediaType.valueOf(SMILE_VALUE);
+
+    /**
+     * A stream of Smile values, one per purchase, as newline delimited JSON is for JSON.
+     */
+    public static final String SMILE_STREAM_VALUE = "application/stream+x-jackson-smile";
+    public static final MediaType SMILE_STREAM = MediaType.valueOf(SMILE_STREAM_VALUE);
+
+    private PurchaseMediaTypes() {
+    }
+}
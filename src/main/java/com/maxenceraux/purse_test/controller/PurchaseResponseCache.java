@@ -0,0 +1,88 @@
+package com.maxenceraux.purse_test.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.maxenceraux.purse_test.config.PurchaseResponseCacheProperties;
+import com.maxenceraux.purse_test.mapper.PurchaseMapper;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+
+/**
+ * Purchases encoded as the JSON body of their response, with a strong ETag made of their id and version.
+ * <p>
+ * A captured purchase has reached its final status and never changes again, so its encoded response is kept
+ * and served as is, without reading, mapping nor serializing the purchase again. The cache is bounded by the
+ * total size of the responses. Hits, misses and evictions are published as {@code cache.*} metrics
+ * tagged {@code cache=purchase-responses}.
+ */
+@Component
+public class PurchaseResponseCache {
+
+	private final Cache<Long, EncodedPurchase> cache;
+	private final PurchaseMapper purchaseMapper;
+	private final ObjectWriter writer;
+
+	public PurchaseResponseCache(PurchaseResponseCacheProperties properties, PurchaseMapper purchaseMapper,
+								 ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(properties.maximumSize().toBytes())
+				.<Long, EncodedPurchase>weigher((id, encodedPurchase) -> encodedPurchase.json().length)
+				.recordStats()
+				.build();
+		this.purchaseMapper = purchaseMapper;
+		this.writer = objectMapper.writerFor(PurchaseDTO.class);
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "purchase-responses");
+	}
+
+	/**
+	 * @return the cached response of a captured purchase, or the purchase emitted by the loader, encoded.
+	 * The response is cached when the purchase is captured.
+	 */
+	public Mono<EncodedPurchase> get(Long purchaseId, Function<Long, Mono<Purchase>> loader) {
+		return Mono.defer(() -> {
+			var encodedPurchase = cache.getIfPresent(purchaseId);
+			return encodedPurchase != null
+					? Mono.just(encodedPurchase)
+					: loader.apply(purchaseId).map(this::encode);
+		});
+	}
+
+	private EncodedPurchase encode(Purchase purchase) {
+		byte[] json;
+		try {
+			json = writer.writeValueAsBytes(purchaseMapper.toDto(purchase));
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
+		var encodedPurchase = new EncodedPurchase(json, etag(purchase, ""));
+		if (purchase.getStatus().next() == null) {
+			cache.put(purchase.getId(), encodedPurchase);
+		}
+		return encodedPurchase;
+	}
+
+	/**
+	 * @param suffix distinguishes the representations of a purchase, empty for JSON
+	 * @return the quoted entity tag of a representation of the purchase, which changes with its version
+	 */
+	static String etag(Purchase purchase, String suffix) {
+		return "\"" + purchase.getId() + "-" + purchase.getVersion() + suffix + "\"";
+	}
+
+	/**
+	 * @param json the response body, shared between responses and never modified
+	 * @param etag the quoted entity tag of the response
+	 */
+	public record EncodedPurchase(byte[] json, String etag) {
+	}
+}
@@ -0,0 +1,39 @@
+package com.maxenceraux.purse_test.controller;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as a generic cell rate algorithm: the whole state is the time at which the
+ * bucket would be full again, updated with a compare-and-set.
+ */
+final class TokenBucket {
+
+	private final long emissionIntervalNanos;
+	private final long burstToleranceNanos;
+	private final AtomicLong theoreticalArrivalTime;
+
+	TokenBucket(double rate, int burst, long nowNanos) {
+		this.emissionIntervalNanos = (long) (1_000_000_000L / rate);
+		this.burstToleranceNanos = emissionIntervalNanos * burst;
+		this.theoreticalArrivalTime = new AtomicLong(nowNanos);
+	}
+
+	/**
+	 * Takes a token when one is available.
+	 *
+	 * @return 0 when a token was taken, otherwise the nanoseconds to wait before one is available
+	 */
+	long tryAcquire(long nowNanos) {
+		while (true) {
+			long arrivalTime = theoreticalArrivalTime.get();
+			long nextArrivalTime = Math.max(arrivalTime, nowNanos) + emissionIntervalNanos;
+			long waitNanos = nextArrivalTime - burstToleranceNanos - nowNanos;
+			if (waitNanos > 0) {
+				return waitNanos;
+			}
+			if (theoreticalArrivalTime.compareAndSet(arrivalTime, nextArrivalTime)) {
+				return 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.maxenceraux.purse_test.exception;
+
+/**
+ * Thrown when an amount cannot be held as a whole number of minor units in a {@code long}.
+ */
+public class AmountOutOfRangeException extends RuntimeException {
+    public AmountOutOfRangeException(String message, ArithmeticException cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,14 @@
+package com.maxenceraux.purse_test.exception;
+
+import lombok.AllArgsConstructor;
+
+@AllArgsConstructor
+public class ConcurrentPurchaseUpdateException extends RuntimeException {
+
+    private Long paymentId;
+
+    @Override
+    public String getMessage() {
+        return "Payment with id " + paymentId + " is being updated concurrently, please retry.";
+    }
+}
@@ -1,16 +1,51 @@
 package com.maxenceraux.purse_test.mapper;
 
+import com.maxenceraux.purse_test.model.Money;
 import com.maxenceraux.purse_test.model.Purchase;
 import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import com.maxenceraux.purse_test.model.PurchasedProductDTO;
+import org.mapstruct.AfterMapping;
+import org.mapstruct.Context;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
-import org.springframework.core.convert.converter.Converter;
+import org.mapstruct.MappingTarget;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Amounts are scaled by the currency of their purchase, so they are mapped once the currency is known.
+ */
 @Mapper(componentModel = "spring")
-public interface PurchaseDtoToPurchaseMapper extends Converter<PurchaseDTO, Purchase> {
+public interface PurchaseDtoToPurchaseMapper {
+
+    @Mapping(target = "amount", ignore = true)
+    @Mapping(target = "purchasedProducts", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    Purchase toPurchase(PurchaseDTO source);
+
+    List<Purchase> toPurchases(List<PurchaseDTO> source);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "purchaseId", ignore = true)
+    PurchasedProduct toPurchasedProduct(PurchasedProductDTO source, @Context String currency);
+
+    @AfterMapping
+    default void mapAmounts(PurchaseDTO source, @MappingTarget Purchase target) {
+        target.setAmount(map(source.getAmount(), source.getCurrency()));
+        if (source.getPurchasedProducts() != null) {
+            var purchasedProducts = new ArrayList<PurchasedProduct>(source.getPurchasedProducts().size());
+            for (PurchasedProductDTO purchasedProduct : source.getPurchasedProducts()) {
+                purchasedProducts.add(toPurchasedProduct(purchasedProduct, source.getCurrency()));
+            }
+            target.setPurchasedProducts(purchasedProducts);
+        }
+    }
 
-    @Override
-    @Mapping(source = "purchasedProducts", target = "purchasedProducts")
-    Purchase convert(PurchaseDTO source);
+    default Money map(BigDecimal amount, @Context String currency) {
+        return amount == null ? null : Money.of(amount, currency);
+    }
 
 }
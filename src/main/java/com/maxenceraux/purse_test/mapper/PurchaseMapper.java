@@ -0,0 +1,54 @@
+package com.maxenceraux.purse_test.mapper;
+
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import com.maxenceraux.purse_test.model.PurchasedProductDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Maps purchases to and from their DTOs by calling the generated MapStruct mappers directly,
+ * so that mapping every element of a response costs a method call rather than a conversion service lookup.
+ */
+@Component
+@RequiredArgsConstructor
+public class PurchaseMapper {
+
+    private final PurchaseToPurchaseDtoMapper purchaseToPurchaseDtoMapper;
+    private final PurchaseDtoToPurchaseMapper purchaseDtoToPurchaseMapper;
+
+    public PurchaseDTO toDto(Purchase purchase) {
+        return purchaseToPurchaseDtoMapper.toDto(purchase);
+    }
+
+    public List<PurchaseDTO> toDtos(List<Purchase> purchases) {
+        return purchaseToPurchaseDtoMapper.toDtos(purchases);
+    }
+
+    /**
+     * @return the purchases mapped as they are emitted, without collecting them
+     */
+    public Flux<PurchaseDTO> toDtos(Flux<Purchase> purchases) {
+        return purchases.map(purchaseToPurchaseDtoMapper::toDto);
+    }
+
+    public PurchasedProductDTO toDto(PurchasedProduct purchasedProduct, String currency) {
+        return purchaseToPurchaseDtoMapper.toDto(purchasedProduct, currency);
+    }
+
+    public Purchase toPurchase(PurchaseDTO purchase) {
+        return purchaseDtoToPurchaseMapper.toPurchase(purchase);
+    }
+
+    public List<Purchase> toPurchases(List<PurchaseDTO> purchases) {
+        return purchaseDtoToPurchaseMapper.toPurchases(purchases);
+    }
+
+    public PurchasedProduct toPurchasedProduct(PurchasedProductDTO purchasedProduct, String currency) {
+        return purchaseDtoToPurchaseMapper.toPurchasedProduct(purchasedProduct, currency);
+    }
+}
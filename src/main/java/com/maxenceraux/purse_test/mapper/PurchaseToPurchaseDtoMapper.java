@@ -1,14 +1,48 @@
 package com.maxenceraux.purse_test.mapper;
 
+import com.maxenceraux.purse_test.model.Money;
 import com.maxenceraux.purse_test.model.Purchase;
 import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import com.maxenceraux.purse_test.model.PurchasedProductDTO;
+import org.mapstruct.AfterMapping;
+import org.mapstruct.Context;
 import org.mapstruct.Mapper;
-import org.springframework.core.convert.converter.Converter;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Amounts are scaled by the currency of their purchase, so they are mapped once the currency is known.
+ */
 @Mapper(componentModel = "spring")
-public interface PurchaseToPurchaseDtoMapper extends Converter<Purchase, PurchaseDTO> {
+public interface PurchaseToPurchaseDtoMapper {
+
+    @Mapping(target = "amount", ignore = true)
+    @Mapping(target = "purchasedProducts", ignore = true)
+    PurchaseDTO toDto(Purchase source);
+
+    List<PurchaseDTO> toDtos(List<Purchase> source);
+
+    PurchasedProductDTO toDto(PurchasedProduct source, @Context String currency);
+
+    @AfterMapping
+    default void mapAmounts(Purchase source, @MappingTarget PurchaseDTO target) {
+        target.setAmount(map(source.getAmount(), source.getCurrency()));
+        if (source.getPurchasedProducts() != null) {
+            var purchasedProducts = new ArrayList<PurchasedProductDTO>(source.getPurchasedProducts().size());
+            for (PurchasedProduct purchasedProduct : source.getPurchasedProducts()) {
+                purchasedProducts.add(toDto(purchasedProduct, source.getCurrency()));
+            }
+            target.setPurchasedProducts(purchasedProducts);
+        }
+    }
 
-    @Override
-    PurchaseDTO convert(Purchase source);
+    default BigDecimal map(Money money, @Context String currency) {
+        return money == null ? null : money.toBigDecimal(currency);
+    }
 
 }
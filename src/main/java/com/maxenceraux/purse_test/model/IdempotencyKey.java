@@ -0,0 +1,31 @@
+package com.maxenceraux.purse_test.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency key of a purchase creation, with the purchase it created.
+ */
+@Table("IDEMPOTENCY_KEY")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyKey {
+
+    @Id
+    @Column("idempotency_key")
+    private String key;
+
+    private Long purchaseId;
+
+    /**
+     * UTC time the key was first used at.
+     */
+    private LocalDateTime createdAt;
+}
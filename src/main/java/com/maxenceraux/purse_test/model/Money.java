@@ -0,0 +1,81 @@
+package com.maxenceraux.purse_test.model;
+
+import com.maxenceraux.purse_test.exception.AmountOutOfRangeException;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Amount of money held as a whole number of minor units of its currency, so that computing totals neither
+ * allocates nor rounds. Operations fail with an {@link AmountOutOfRangeException} instead of overflowing.
+ * <p>
+ * Amounts are exchanged as {@link BigDecimal} at the JSON boundary only, with the number of fraction digits of
+ * their currency: none for JPY, two for EUR, three for KWD.
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+
+    /**
+     * Fraction digits of a currency unknown to {@link Currency}, or without minor units.
+     */
+    public static final int DEFAULT_SCALE = 2;
+
+    public static final Money ZERO = new Money(0);
+
+    /**
+     * @throws AmountOutOfRangeException when the amount has more fraction digits than its currency or does not fit
+     */
+    public static Money of(BigDecimal amount, String currency) {
+        try {
+            return new Money(amount.movePointRight(scale(currency)).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new AmountOutOfRangeException("Amount " + amount.toPlainString()
+                    + " is not a whole number of minor units of " + currency + " or is out of range", e);
+        }
+    }
+
+    /**
+     * @return the default fraction digits of the currency, or {@value #DEFAULT_SCALE} for unknown codes
+     */
+    public static int scale(String currency) {
+        if (currency == null) {
+            return DEFAULT_SCALE;
+        }
+        try {
+            int fractionDigits = Currency.getInstance(currency).getDefaultFractionDigits();
+            return fractionDigits < 0 ? DEFAULT_SCALE : fractionDigits;
+        } catch (IllegalArgumentException e) {
+            return DEFAULT_SCALE;
+        }
+    }
+
+    /**
+     * @throws AmountOutOfRangeException when the sum overflows
+     */
+    public Money plus(Money other) {
+        try {
+            return new Money(Math.addExact(minorUnits, other.minorUnits));
+        } catch (ArithmeticException e) {
+            throw new AmountOutOfRangeException("Amount out of range", e);
+        }
+    }
+
+    /**
+     * @throws AmountOutOfRangeException when the product overflows
+     */
+    public Money times(int quantity) {
+        try {
+            return new Money(Math.multiplyExact(minorUnits, quantity));
+        } catch (ArithmeticException e) {
+            throw new AmountOutOfRangeException("Amount out of range", e);
+        }
+    }
+
+    public BigDecimal toBigDecimal(String currency) {
+        return BigDecimal.valueOf(minorUnits, scale(currency));
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+}
@@ -1,14 +1,16 @@
 package com.maxenceraux.purse_test.model;
 
+import com.maxenceraux.purse_test.exception.AmountOutOfRangeException;
 import com.maxenceraux.purse_test.exception.UnsupportedMethodChangeException;
 import com.maxenceraux.purse_test.exception.UnsupportedStatusChangeException;
 import lombok.*;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 
-import java.math.BigDecimal;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 @Getter
 @Data
@@ -19,7 +21,7 @@ public class Purchase {
 	@Id
 	private Long id;
 
-	private BigDecimal amount;
+	private Money amount;
 
 	private String currency;
 
@@ -28,16 +30,29 @@ public class Purchase {
 
 	private PaymentStatus status;
 
+	/**
+	 * Incremented on every update, so that an update made from a stale snapshot is detected.
+	 */
+	@Version
+	private Long version;
+
 	@With
 	@Transient
 	private List<PurchasedProduct> purchasedProducts;
 
+	/**
+	 * @throws AmountOutOfRangeException when the total cost of the products overflows
+	 */
 	public void initPurchase() {
 		status = PaymentStatus.IN_PROGRESS;
-		amount = purchasedProducts.stream()
-				.map(PurchasedProduct::getTotalCost)
-				.reduce(BigDecimal::add)
-				.orElseThrow();
+		if (purchasedProducts.isEmpty()) {
+			throw new NoSuchElementException("A purchase needs at least one product");
+		}
+		Money totalCost = Money.ZERO;
+		for (PurchasedProduct purchasedProduct : purchasedProducts) {
+			totalCost = totalCost.plus(purchasedProduct.getTotalCost());
+		}
+		amount = totalCost;
 	}
 
 	public void updateStatus(PaymentStatus status) throws UnsupportedStatusChangeException {
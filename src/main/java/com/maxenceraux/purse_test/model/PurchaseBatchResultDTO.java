@@ -0,0 +1,35 @@
+package com.maxenceraux.purse_test.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of one purchase of a batch creation: the id it was created with, or why it was rejected.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PurchaseBatchResultDTO {
+
+    /**
+     * Position of the purchase in the submitted batch, starting at 0.
+     */
+    private long index;
+
+    private Long id;
+
+    private List<String> errors;
+
+    public static PurchaseBatchResultDTO created(long index, Long id) {
+        return new PurchaseBatchResultDTO(index, id, null);
+    }
+
+    public static PurchaseBatchResultDTO rejected(long index, List<String> errors) {
+        return new PurchaseBatchResultDTO(index, null, errors);
+    }
+}
@@ -0,0 +1,38 @@
+package com.maxenceraux.purse_test.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * State of a purchase pushed to event stream subscribers, either as it was when they subscribed
+ * or after one of its updates.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PurchaseEventDTO {
+
+    public enum Type {
+        CURRENT,
+        STATUS_CHANGED,
+        PAYMENT_METHOD_CHANGED
+    }
+
+    private Type type;
+
+    private Long purchaseId;
+
+    private PaymentStatus status;
+
+    private PaymentMethod paymentMethod;
+
+    /**
+     * Version of the purchase once the event happened, increasing with every update.
+     */
+    private Long version;
+
+    public static PurchaseEventDTO of(Type type, Purchase purchase) {
+        return new PurchaseEventDTO(type, purchase.getId(), purchase.getStatus(), purchase.getPaymentMethod(), purchase.getVersion());
+    }
+}
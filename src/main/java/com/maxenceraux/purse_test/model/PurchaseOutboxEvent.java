@@ -0,0 +1,56 @@
+package com.maxenceraux.purse_test.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Change of a purchase waiting in the outbox to be relayed to downstream systems, with the state of the purchase
+ * once changed. The id increases with the order events were written in, and identifies the event for consumers
+ * deduplicating redeliveries.
+ */
+@Table("PURCHASE_OUTBOX")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PurchaseOutboxEvent {
+
+    public enum Type {
+        CREATED,
+        STATUS_CHANGED,
+        PAYMENT_METHOD_CHANGED
+    }
+
+    @Id
+    private Long id;
+
+    private Long purchaseId;
+
+    private Type type;
+
+    private Money amount;
+
+    private String currency;
+
+    @Column("payment_method")
+    private PaymentMethod paymentMethod;
+
+    private PaymentStatus status;
+
+    private Long version;
+
+    /**
+     * UTC time the event was written at.
+     */
+    private LocalDateTime createdAt;
+
+    public static PurchaseOutboxEvent of(Type type, Purchase purchase, LocalDateTime createdAt) {
+        return new PurchaseOutboxEvent(null, purchase.getId(), type, purchase.getAmount(), purchase.getCurrency(),
+                purchase.getPaymentMethod(), purchase.getStatus(), purchase.getVersion(), createdAt);
+    }
+}
@@ -0,0 +1,18 @@
+package com.maxenceraux.purse_test.model;
+
+/**
+ * Filters of a purchase search. Every filter is optional, a null one matches every purchase.
+ *
+ * @param minAmount        inclusive lower bound of the amount
+ * @param maxAmount        inclusive upper bound of the amount
+ * @param productReference reference of one of the purchased products
+ */
+public record PurchaseSearchCriteria(
+        PaymentStatus status,
+        PaymentMethod paymentMethod,
+        String currency,
+        Money minAmount,
+        Money maxAmount,
+        String productReference
+) {
+}
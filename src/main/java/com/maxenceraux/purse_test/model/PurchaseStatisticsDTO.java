@@ -0,0 +1,34 @@
+package com.maxenceraux.purse_test.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Number and total amount of the purchases, by currency, then by status and by payment method.
+ * Amounts are only summed within a currency.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PurchaseStatisticsDTO {
+
+    private Map<String, Totals> byCurrency;
+
+    private Map<PaymentStatus, Map<String, Totals>> byStatus;
+
+    private Map<PaymentMethod, Map<String, Totals>> byPaymentMethod;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Totals {
+
+        private long purchases;
+
+        private BigDecimal amount;
+    }
+}
@@ -0,0 +1,26 @@
+package com.maxenceraux.purse_test.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.relational.core.mapping.Column;
+
+/**
+ * Number and total amount of the purchases sharing a currency, a status and a payment method.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PurchaseTotals {
+
+    private String currency;
+
+    private PaymentStatus status;
+
+    @Column("payment_method")
+    private PaymentMethod paymentMethod;
+
+    private Long purchases;
+
+    private Money amount;
+}
@@ -1,13 +1,12 @@
 package com.maxenceraux.purse_test.model;
 
+import com.maxenceraux.purse_test.exception.AmountOutOfRangeException;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.relational.core.mapping.Table;
 
-import java.math.BigDecimal;
-
 @Table("PURCHASED_PRODUCT")
 @AllArgsConstructor
 @NoArgsConstructor
@@ -23,11 +22,14 @@ public class PurchasedProduct {
 
     private Integer quantity;
 
-    private BigDecimal price;
+    private Money price;
 
     private Long purchaseId;
 
-    public BigDecimal getTotalCost() {
-        return price.multiply(new BigDecimal(quantity));
+    /**
+     * @throws AmountOutOfRangeException when the total cost overflows
+     */
+    public Money getTotalCost() {
+        return price.times(quantity);
     }
 }
@@ -1,5 +1,6 @@
 package com.maxenceraux.purse_test.model;
 
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
@@ -24,6 +25,10 @@ public class PurchasedProductDTO {
     @Positive
     private Integer quantity;
 
+    /**
+     * At most three fraction digits here, the fraction digits of the purchase currency being checked when mapped.
+     */
     @Positive
+    @Digits(integer = 16, fraction = 3)
     private BigDecimal price;
 }
@@ -0,0 +1,45 @@
+package com.maxenceraux.purse_test.repository;
+
+import com.maxenceraux.purse_test.model.IdempotencyKey;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyKeyRepository extends R2dbcRepository<IdempotencyKey, String> {
+
+    /**
+     * @return the id of the purchase created with the key since the given time, empty when there is none
+     * or when its creation has not been committed yet
+     */
+    @Query("""
+            SELECT purchase_id FROM IDEMPOTENCY_KEY
+            WHERE idempotency_key = :key AND created_at > :notBefore AND purchase_id IS NOT NULL
+            """)
+    Mono<Long> findPurchaseId(String key, LocalDateTime notBefore);
+
+    /**
+     * Claims a key before creating its purchase. Fails with a duplicate key error when the key is already used,
+     * after waiting for the transaction that claimed it, if any, to end.
+     */
+    @Modifying
+    @Query("INSERT INTO IDEMPOTENCY_KEY (idempotency_key, created_at) VALUES (:key, :createdAt)")
+    Mono<Integer> claim(String key, LocalDateTime createdAt);
+
+    @Modifying
+    @Query("UPDATE IDEMPOTENCY_KEY SET purchase_id = :purchaseId WHERE idempotency_key = :key")
+    Mono<Integer> setPurchaseId(String key, Long purchaseId);
+
+    /**
+     * Deletes a key if it has expired, so that it can be claimed again.
+     */
+    @Modifying
+    @Query("DELETE FROM IDEMPOTENCY_KEY WHERE idempotency_key = :key AND created_at <= :notAfter")
+    Mono<Integer> deleteIfCreatedUntil(String key, LocalDateTime notAfter);
+
+    @Modifying
+    @Query("DELETE FROM IDEMPOTENCY_KEY WHERE created_at <= :notAfter")
+    Mono<Integer> deleteCreatedUntil(LocalDateTime notAfter);
+}
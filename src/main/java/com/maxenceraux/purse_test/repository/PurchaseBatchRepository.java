@@ -0,0 +1,17 @@
+package com.maxenceraux.purse_test.repository;
+
+import com.maxenceraux.purse_test.model.Purchase;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+public interface PurchaseBatchRepository {
+
+    /**
+     * Inserts the purchases with a single batched statement rather than one statement per purchase,
+     * and sets the generated ids on them. Their purchased products are left untouched.
+     *
+     * @return the inserted purchases, in the order they were given
+     */
+    Flux<Purchase> insertAll(List<Purchase> purchases);
+}
@@ -0,0 +1,53 @@
+package com.maxenceraux.purse_test.repository;
+
+import com.maxenceraux.purse_test.model.Purchase;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+class PurchaseBatchRepositoryImpl implements PurchaseBatchRepository {
+
+    private static final String INSERT = """
+            INSERT INTO PURCHASE (amount, currency, payment_method, status, version)
+            VALUES ($1, $2, $3, $4, 0)
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter r2dbcConverter;
+
+    @Override
+    public Flux<Purchase> insertAll(List<Purchase> purchases) {
+        if (purchases.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.inConnectionMany(connection -> {
+                    var statement = connection.createStatement(INSERT).returnGeneratedValues("id");
+                    for (int i = 0; i < purchases.size(); i++) {
+                        if (i > 0) {
+                            statement.add();
+                        }
+                        bind(statement, purchases.get(i));
+                    }
+                    return Flux.from(statement.execute())
+                            .concatMap(result -> result.map(row -> r2dbcConverter.getConversionService()
+                                    .convert(row.get("id"), Long.class)));
+                })
+                .zipWithIterable(purchases, (id, purchase) -> {
+                    purchase.setId(id);
+                    purchase.setVersion(0L);
+                    return purchase;
+                });
+    }
+
+    private static void bind(Statement statement, Purchase purchase) {
+        statement.bind(0, purchase.getAmount().minorUnits());
+        statement.bind(1, purchase.getCurrency());
+        statement.bind(2, purchase.getPaymentMethod().name());
+        statement.bind(3, purchase.getStatus().name());
+    }
+}
@@ -0,0 +1,29 @@
+package com.maxenceraux.purse_test.repository;
+
+import com.maxenceraux.purse_test.model.PurchaseOutboxEvent;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface PurchaseOutboxRepository extends R2dbcRepository<PurchaseOutboxEvent, Long> {
+
+    /**
+     * @return the oldest events of the outbox, in the order they were written in
+     */
+    @Query("SELECT * FROM PURCHASE_OUTBOX ORDER BY id LIMIT :limit")
+    Flux<PurchaseOutboxEvent> findOldest(int limit);
+
+    /**
+     * @return the oldest events of the outbox not about the given purchases, in the order they were written in
+     */
+    @Query("SELECT * FROM PURCHASE_OUTBOX WHERE purchase_id NOT IN (:purchaseIds) ORDER BY id LIMIT :limit")
+    Flux<PurchaseOutboxEvent> findOldestExcluding(Collection<Long> purchaseIds, int limit);
+
+    @Modifying
+    @Query("DELETE FROM PURCHASE_OUTBOX WHERE id IN (:ids)")
+    Mono<Integer> deleteByIdIn(Collection<Long> ids);
+}
@@ -1,8 +1,43 @@
 package com.maxenceraux.purse_test.repository;
 
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PaymentStatus;
 import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseTotals;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-public interface PurchaseRepository extends R2dbcRepository<Purchase, Long> {
+public interface PurchaseRepository extends R2dbcRepository<Purchase, Long>, PurchaseWithProductsRepository,
+        PurchaseBatchRepository {
 
+    /**
+     * Changes the status of a purchase and increments its version, only if it still has the expected version.
+     *
+     * @return the number of updated rows, 0 when the purchase is missing or has been modified since that version
+     */
+    @Modifying
+    @Query("UPDATE PURCHASE SET status = :status, version = version + 1 WHERE id = :id AND version = :version")
+    Mono<Integer> updateStatus(Long id, Long version, PaymentStatus status);
+
+    /**
+     * Changes the payment method of a purchase and increments its version, only if it still has the expected version.
+     *
+     * @return the number of updated rows, 0 when the purchase is missing or has been modified since that version
+     */
+    @Modifying
+    @Query("UPDATE PURCHASE SET payment_method = :paymentMethod, version = version + 1 WHERE id = :id AND version = :version")
+    Mono<Integer> updatePaymentMethod(Long id, Long version, PaymentMethod paymentMethod);
+
+    /**
+     * Counts and sums the amounts of the purchases by currency, status and payment method.
+     */
+    @Query("""
+            SELECT currency, status, payment_method, COUNT(*) AS purchases, CAST(SUM(amount) AS BIGINT) AS amount
+            FROM PURCHASE
+            GROUP BY currency, status, payment_method
+            """)
+    Flux<PurchaseTotals> sumByCurrencyAndStatusAndPaymentMethod();
 }
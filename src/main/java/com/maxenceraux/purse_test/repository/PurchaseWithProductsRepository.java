@@ -0,0 +1,47 @@
+package com.maxenceraux.purse_test.repository;
+
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseSearchCriteria;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Read paths returning purchases already assembled with their purchased products,
+ * fetched with a single PURCHASE LEFT JOIN PURCHASED_PRODUCT query instead of one query per purchase.
+ */
+public interface PurchaseWithProductsRepository {
+
+    Mono<Purchase> findByIdWithProducts(Long id);
+
+    /**
+     * Finds the purchases with the given ids, ordered by id. Missing ids are ignored.
+     */
+    Flux<Purchase> findAllWithProductsByIdIn(Collection<Long> ids);
+
+    /**
+     * Streams every purchase, ordered by id, with its purchased products.
+     * The stream is read as successive keyset pages of {@link #findPageWithProducts(long, int)}, so that neither
+     * the database nor the application holds more than one page of the table at a time.
+     */
+    Flux<Purchase> findAllWithProducts();
+
+    /**
+     * Same as {@link #findAllWithProducts()}, starting after the purchase of id {@code after} (exclusive).
+     * The next page is queried once the previous one is emitted, so a slow consumer does not pull the whole table.
+     */
+    Flux<Purchase> findAllWithProductsAfter(long after);
+
+    /**
+     * Keyset page of at most {@code limit} purchases whose id is greater than {@code after}, ordered by id.
+     * The id of the last purchase returned is the cursor of the next page.
+     */
+    Flux<Purchase> findPageWithProducts(long after, int limit);
+
+    /**
+     * Keyset page of at most {@code limit} purchases matching the criteria whose id is greater than {@code after},
+     * ordered by id. The filters are applied by the database, in a single query binding their values.
+     */
+    Flux<Purchase> searchPageWithProducts(PurchaseSearchCriteria criteria, long after, int limit);
+}
@@ -0,0 +1,173 @@
+package com.maxenceraux.purse_test.repository;
+
+import com.maxenceraux.purse_test.config.PaginationProperties;
+import com.maxenceraux.purse_test.model.Money;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseSearchCriteria;
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+@RequiredArgsConstructor
+class PurchaseWithProductsRepositoryImpl implements PurchaseWithProductsRepository {
+
+    private static final String SELECT_WITH_PRODUCTS = """
+            SELECT p.id, p.amount, p.currency, p.payment_method, p.status, p.version,
+                   pp.id AS product_id, pp.name AS product_name, pp.reference AS product_reference,
+                   pp.quantity AS product_quantity, pp.price AS product_price
+            FROM (%s) p
+            LEFT JOIN PURCHASED_PRODUCT pp ON pp.purchase_id = p.id
+            ORDER BY p.id, pp.id
+            """;
+    private static final String PURCHASE_BY_ID = SELECT_WITH_PRODUCTS.formatted(
+            "SELECT * FROM PURCHASE WHERE id = :id");
+    private static final String PURCHASES_BY_IDS = SELECT_WITH_PRODUCTS.formatted(
+            "SELECT * FROM PURCHASE WHERE id IN (:ids)");
+    // the limit applies to purchases, not to joined rows, hence the derived table
+    private static final String PURCHASES_PAGE = SELECT_WITH_PRODUCTS.formatted(
+            "SELECT * FROM PURCHASE WHERE id > :after ORDER BY id LIMIT :limit");
+    private static final String SEARCH_PAGE = "SELECT * FROM PURCHASE WHERE %s ORDER BY id LIMIT :limit";
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter r2dbcConverter;
+    private final PaginationProperties paginationProperties;
+
+    @Override
+    public Mono<Purchase> findByIdWithProducts(Long id) {
+        return groupByPurchase(databaseClient.sql(PURCHASE_BY_ID)
+                .bind("id", id))
+                .singleOrEmpty();
+    }
+
+    @Override
+    public Flux<Purchase> findAllWithProductsByIdIn(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return groupByPurchase(databaseClient.sql(PURCHASES_BY_IDS)
+                .bind("ids", ids));
+    }
+
+    @Override
+    public Flux<Purchase> findAllWithProducts() {
+        return findAllWithProductsAfter(0L);
+    }
+
+    @Override
+    public Flux<Purchase> findAllWithProductsAfter(long after) {
+        int pageSize = paginationProperties.streamPageSize();
+        // the next page is queried once the previous one is emitted, so a single query is pending at a time
+        return findPageWithProducts(after, pageSize)
+                .collectList()
+                .expand(page -> page.size() < pageSize
+                        ? Mono.empty()
+                        : findPageWithProducts(page.get(page.size() - 1).getId(), pageSize).collectList())
+                .flatMapIterable(Function.identity());
+    }
+
+    @Override
+    public Flux<Purchase> findPageWithProducts(long after, int limit) {
+        return groupByPurchase(databaseClient.sql(PURCHASES_PAGE)
+                .bind("after", after)
+                .bind("limit", limit));
+    }
+
+    @Override
+    public Flux<Purchase> searchPageWithProducts(PurchaseSearchCriteria criteria, long after, int limit) {
+        var predicates = new ArrayList<String>();
+        var bindings = new LinkedHashMap<String, Object>();
+        predicate(predicates, bindings, "id > :after", "after", after);
+        predicate(predicates, bindings, "status = :status", "status",
+                criteria.status() == null ? null : criteria.status().name());
+        predicate(predicates, bindings, "payment_method = :paymentMethod", "paymentMethod",
+                criteria.paymentMethod() == null ? null : criteria.paymentMethod().name());
+        predicate(predicates, bindings, "currency = :currency", "currency", criteria.currency());
+        predicate(predicates, bindings, "amount >= :minAmount", "minAmount",
+                criteria.minAmount() == null ? null : criteria.minAmount().minorUnits());
+        predicate(predicates, bindings, "amount <= :maxAmount", "maxAmount",
+                criteria.maxAmount() == null ? null : criteria.maxAmount().minorUnits());
+        predicate(predicates, bindings,
+                "EXISTS (SELECT 1 FROM PURCHASED_PRODUCT product WHERE product.reference = :reference AND product.purchase_id = PURCHASE.id)",
+                "reference", criteria.productReference());
+        bindings.put("limit", limit);
+
+        // only the filters given are rendered, so that each combination is its own plan using the matching index
+        var query = databaseClient.sql(SELECT_WITH_PRODUCTS.formatted(SEARCH_PAGE.formatted(String.join(" AND ", predicates))));
+        for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+            query = query.bind(binding.getKey(), binding.getValue());
+        }
+        return groupByPurchase(query);
+    }
+
+    private static void predicate(List<String> predicates, Map<String, Object> bindings,
+                                  String predicate, String parameter, Object value) {
+        if (value != null) {
+            predicates.add(predicate);
+            bindings.put(parameter, value);
+        }
+    }
+
+    private Flux<Purchase> groupByPurchase(DatabaseClient.GenericExecuteSpec query) {
+        return query.map(this::readRow)
+                .all()
+                .bufferUntilChanged(row -> row.purchase().getId())
+                .map(PurchaseWithProductsRepositoryImpl::assemble);
+    }
+
+    private static Purchase assemble(List<JoinedRow> rows) {
+        var purchasedProducts = new ArrayList<PurchasedProduct>(rows.size());
+        rows.forEach(row -> {
+            if (row.purchasedProduct() != null) {
+                purchasedProducts.add(row.purchasedProduct());
+            }
+        });
+        return rows.get(0).purchase().withPurchasedProducts(purchasedProducts);
+    }
+
+    private JoinedRow readRow(Readable row) {
+        var purchase = new Purchase(
+                read(row, "id", Long.class),
+                new Money(read(row, "amount", Long.class)),
+                read(row, "currency", String.class),
+                read(row, "payment_method", PaymentMethod.class),
+                read(row, "status", PaymentStatus.class),
+                read(row, "version", Long.class),
+                null);
+        var productId = read(row, "product_id", Long.class);
+        if (productId == null) {
+            return new JoinedRow(purchase, null);
+        }
+        var purchasedProduct = new PurchasedProduct(
+                productId,
+                read(row, "product_name", String.class),
+                read(row, "product_reference", String.class),
+                read(row, "product_quantity", Integer.class),
+                new Money(read(row, "product_price", Long.class)),
+                purchase.getId());
+        return new JoinedRow(purchase, purchasedProduct);
+    }
+
+    /**
+     * Column values are converted the same way Spring Data reads entities (e.g. INT to Long),
+     * as the driver only decodes to the column's own type.
+     */
+    private <T> T read(Readable row, String column, Class<T> type) {
+        return r2dbcConverter.getConversionService().convert(row.get(column), type);
+    }
+
+    private record JoinedRow(Purchase purchase, PurchasedProduct purchasedProduct) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.maxenceraux.purse_test.repository;
+
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+public interface PurchasedProductBatchRepository {
+
+    /**
+     * Inserts the purchased products with a single batched statement rather than one statement per product,
+     * and sets the generated ids on them.
+     *
+     * @return the inserted products, in the order they were given
+     */
+    Flux<PurchasedProduct> insertAll(List<PurchasedProduct> purchasedProducts);
+}
@@ -0,0 +1,61 @@
+package com.maxenceraux.purse_test.repository;
+
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+class PurchasedProductBatchRepositoryImpl implements PurchasedProductBatchRepository {
+
+    private static final String INSERT = """
+            INSERT INTO PURCHASED_PRODUCT (purchase_id, name, reference, quantity, price)
+            VALUES ($1, $2, $3, $4, $5)
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter r2dbcConverter;
+
+    @Override
+    public Flux<PurchasedProduct> insertAll(List<PurchasedProduct> purchasedProducts) {
+        if (purchasedProducts.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.inConnectionMany(connection -> {
+                    var statement = connection.createStatement(INSERT).returnGeneratedValues("id");
+                    for (int i = 0; i < purchasedProducts.size(); i++) {
+                        if (i > 0) {
+                            statement.add();
+                        }
+                        bind(statement, purchasedProducts.get(i));
+                    }
+                    return Flux.from(statement.execute())
+                            .concatMap(result -> result.map(row -> r2dbcConverter.getConversionService()
+                                    .convert(row.get("id"), Long.class)));
+                })
+                .zipWithIterable(purchasedProducts, (id, purchasedProduct) -> {
+                    purchasedProduct.setId(id);
+                    return purchasedProduct;
+                });
+    }
+
+    private static void bind(Statement statement, PurchasedProduct purchasedProduct) {
+        bind(statement, 0, purchasedProduct.getPurchaseId(), Long.class);
+        bind(statement, 1, purchasedProduct.getName(), String.class);
+        bind(statement, 2, purchasedProduct.getReference(), String.class);
+        bind(statement, 3, purchasedProduct.getQuantity(), Integer.class);
+        bind(statement, 4, purchasedProduct.getPrice() == null ? null : purchasedProduct.getPrice().minorUnits(), Long.class);
+    }
+
+    private static void bind(Statement statement, int index, Object value, Class<?> type) {
+        if (value == null) {
+            statement.bindNull(index, type);
+        } else {
+            statement.bind(index, value);
+        }
+    }
+}
@@ -6,7 +6,7 @@ import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 
 @Repository
-public interface PurchasedProductRepository extends ReactiveCrudRepository<PurchasedProduct, Long> {
+public interface PurchasedProductRepository extends ReactiveCrudRepository<PurchasedProduct, Long>, PurchasedProductBatchRepository {
 
     Flux<PurchasedProduct> findAllByPurchaseId(Long id);
 }
@@ -0,0 +1,68 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.config.IdempotencyProperties;
+import com.maxenceraux.purse_test.repository.IdempotencyKeyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Deletes the expired persisted idempotency keys in the background, with a single statement every
+ * {@code cleanupInterval}, so that claiming a key never sweeps the whole table.
+ */
+@Slf4j
+@Component
+public class IdempotencyKeyCleanup implements SmartLifecycle {
+
+	private final IdempotencyKeyRepository idempotencyKeyRepository;
+	private final IdempotencyProperties properties;
+	private volatile Disposable cleanup;
+
+	public IdempotencyKeyCleanup(IdempotencyKeyRepository idempotencyKeyRepository, IdempotencyProperties properties) {
+		this.idempotencyKeyRepository = idempotencyKeyRepository;
+		this.properties = properties;
+	}
+
+	@Override
+	public void start() {
+		if (!properties.persisted()) {
+			return;
+		}
+		cleanup = Flux.interval(properties.cleanupInterval())
+				.onBackpressureDrop()
+				.concatMap(tick -> deleteExpired()
+						.onErrorResume(e -> {
+							log.warn("Could not delete the expired idempotency keys", e);
+							return Mono.empty();
+						}), 1)
+				.subscribe();
+	}
+
+	@Override
+	public void stop() {
+		var current = cleanup;
+		if (current != null) {
+			current.dispose();
+			cleanup = null;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return cleanup != null;
+	}
+
+	/**
+	 * @return the number of keys deleted
+	 */
+	public Mono<Integer> deleteExpired() {
+		return Mono.defer(() -> idempotencyKeyRepository.deleteCreatedUntil(
+				LocalDateTime.now(ZoneOffset.UTC).minus(properties.timeToLive())));
+	}
+}
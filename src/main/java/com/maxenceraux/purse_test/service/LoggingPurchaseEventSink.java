@@ -0,0 +1,17 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.model.PurchaseOutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sink logging the relayed events, used unless another {@link PurchaseEventSink} is declared {@code @Primary}.
+ */
+@Slf4j
+public class LoggingPurchaseEventSink implements PurchaseEventSink {
+
+	@Override
+	public Mono<Void> send(PurchaseOutboxEvent event) {
+		return Mono.fromRunnable(() -> log.info("Purchase event {}", event));
+	}
+}
@@ -0,0 +1,93 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.config.BatchProperties;
+import com.maxenceraux.purse_test.exception.AmountOutOfRangeException;
+import com.maxenceraux.purse_test.mapper.PurchaseMapper;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseBatchResultDTO;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates purchases submitted in bulk. Each purchase is validated and has its amount computed on its own,
+ * so that an invalid purchase or one whose amount overflows is rejected alone. Valid ones are persisted by chunks
+ * with {@link PurchaseService#createInitializedPurchases(List)}, which does not compute their amount again, and
+ * a result is emitted for every purchase, in submission order, so that an invalid purchase or a failing chunk does
+ * not fail the whole batch.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PurchaseBatchService {
+
+	// the cause is logged only, as it may hold the text of a database error
+	static final String SAVE_FAILED = "Could not save purchase";
+
+	private final PurchaseService purchaseService;
+	private final PurchaseMapper purchaseMapper;
+	private final Validator validator;
+	private final BatchProperties batchProperties;
+
+	public Flux<PurchaseBatchResultDTO> createPurchases(Flux<PurchaseDTO> purchases) {
+		return purchases.index()
+				.bufferTimeout(batchProperties.chunkSize(), batchProperties.chunkMaxWait(), true)
+				.flatMapSequential(this::createChunk, batchProperties.concurrency());
+	}
+
+	private Flux<PurchaseBatchResultDTO> createChunk(List<Tuple2<Long, PurchaseDTO>> chunk) {
+		var results = new PurchaseBatchResultDTO[chunk.size()];
+		var validPositions = new ArrayList<Integer>(chunk.size());
+		var validPurchases = new ArrayList<Purchase>(chunk.size());
+		for (int i = 0; i < chunk.size(); i++) {
+			var errors = validate(chunk.get(i).getT2());
+			if (errors.isEmpty()) {
+				try {
+					var purchase = purchaseMapper.toPurchase(chunk.get(i).getT2());
+					purchase.initPurchase();
+					validPositions.add(i);
+					validPurchases.add(purchase);
+				} catch (AmountOutOfRangeException e) {
+					results[i] = PurchaseBatchResultDTO.rejected(chunk.get(i).getT1(), List.of(e.getMessage()));
+				}
+			} else {
+				results[i] = PurchaseBatchResultDTO.rejected(chunk.get(i).getT1(), errors);
+			}
+		}
+		if (validPurchases.isEmpty()) {
+			return Flux.fromArray(results);
+		}
+
+		return purchaseService.createInitializedPurchases(validPurchases)
+				.collectList()
+				.doOnNext(savedPurchases -> {
+					for (int i = 0; i < savedPurchases.size(); i++) {
+						int position = validPositions.get(i);
+						results[position] = PurchaseBatchResultDTO.created(chunk.get(position).getT1(), savedPurchases.get(i).getId());
+					}
+				})
+				.onErrorResume(e -> {
+					log.warn("Could not save a chunk of {} purchases", validPurchases.size(), e);
+					validPositions.forEach(position -> results[position] = PurchaseBatchResultDTO.rejected(
+							chunk.get(position).getT1(), List.of(SAVE_FAILED)));
+					return Mono.empty();
+				})
+				.thenMany(Flux.defer(() -> Flux.fromIterable(Arrays.asList(results))));
+	}
+
+	private List<String> validate(PurchaseDTO purchase) {
+		return validator.validate(purchase).stream()
+				.map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+				.sorted()
+				.toList();
+	}
+}
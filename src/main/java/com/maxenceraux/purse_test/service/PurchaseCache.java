@@ -0,0 +1,52 @@
+package com.maxenceraux.purse_test.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.maxenceraux.purse_test.config.PurchaseCacheProperties;
+import com.maxenceraux.purse_test.model.Purchase;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Size and time bounded cache of purchases with their products, by id.
+ * <p>
+ * Concurrent misses on the same id share a single load. Cached purchases are shared between callers
+ * and must not be modified. Hits, misses and evictions are published as {@code cache.*} metrics
+ * tagged {@code cache=purchases}.
+ */
+@Component
+public class PurchaseCache {
+
+	private final AsyncCache<Long, Purchase> cache;
+
+	public PurchaseCache(PurchaseCacheProperties properties, MeterRegistry meterRegistry) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(properties.maximumSize())
+				.expireAfterWrite(properties.timeToLive())
+				.recordStats()
+				.buildAsync();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "purchases");
+	}
+
+	/**
+	 * @return the cached purchase, or the one emitted by the loader, which is then cached.
+	 * Nothing is cached when the loader completes empty.
+	 */
+	public Mono<Purchase> get(Long purchaseId, Function<Long, Mono<Purchase>> loader) {
+		// a subscriber cancelling must not cancel the load other subscribers may be waiting for
+		return Mono.fromFuture(() -> cache.get(purchaseId, (id, executor) -> loader.apply(id).toFuture()), true);
+	}
+
+	public void put(Purchase purchase) {
+		cache.put(purchase.getId(), CompletableFuture.completedFuture(purchase));
+	}
+
+	public void invalidate(Long purchaseId) {
+		cache.synchronous().invalidate(purchaseId);
+	}
+}
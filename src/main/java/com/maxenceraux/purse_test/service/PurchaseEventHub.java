@@ -0,0 +1,90 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.config.EventStreamProperties;
+import com.maxenceraux.purse_test.model.PurchaseEventDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process multicast of purchase changes to event stream subscribers.
+ * <p>
+ * Publishing never waits for subscribers: each of them has its own bounded buffer, so a slow subscriber
+ * loses events instead of holding the others back. Dropped events are counted in {@code purchase.events.dropped}.
+ * <p>
+ * Subscribers of a single purchase share a sink of that purchase, created by its first subscriber and removed with
+ * its last one, so that publishing an event only reaches the subscribers it is meant for.
+ */
+@Component
+public class PurchaseEventHub {
+
+	// publishers on different threads retry briefly instead of failing on concurrent emissions
+	private static final Sinks.EmitFailureHandler RETRY_CONCURRENT_EMISSIONS = Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100));
+
+	private final Sinks.Many<PurchaseEventDTO> sink = Sinks.many().multicast().directBestEffort();
+	private final Map<Long, PurchaseSink> purchaseSinks = new ConcurrentHashMap<>();
+	private final int bufferSize;
+	private final Counter droppedEvents;
+
+	public PurchaseEventHub(EventStreamProperties properties, MeterRegistry meterRegistry) {
+		this.bufferSize = properties.bufferSize();
+		this.droppedEvents = meterRegistry.counter("purchase.events.dropped");
+	}
+
+	public void publish(PurchaseEventDTO event) {
+		sink.emitNext(event, RETRY_CONCURRENT_EMISSIONS);
+		var purchaseSink = purchaseSinks.get(event.getPurchaseId());
+		if (purchaseSink != null) {
+			purchaseSink.sink.emitNext(event, RETRY_CONCURRENT_EMISSIONS);
+		}
+	}
+
+	/**
+	 * @return the events of every purchase, the oldest being dropped when more than the buffer size are pending
+	 */
+	public Flux<PurchaseEventDTO> events() {
+		return sink.asFlux()
+				.onBackpressureBuffer(bufferSize, event -> droppedEvents.increment(), BufferOverflowStrategy.DROP_OLDEST);
+	}
+
+	/**
+	 * @return the events of a purchase, of which only the latest is kept when several are pending,
+	 * since it holds the whole state of the purchase
+	 */
+	public Flux<PurchaseEventDTO> events(Long purchaseId) {
+		return Flux.defer(() -> {
+			var purchaseSink = purchaseSinks.compute(purchaseId, (id, current) -> {
+				var subscribed = current == null ? new PurchaseSink() : current;
+				subscribed.subscribers++;
+				return subscribed;
+			});
+			return purchaseSink.sink.asFlux()
+					.doFinally(signal -> purchaseSinks.computeIfPresent(purchaseId,
+							(id, current) -> --current.subscribers == 0 ? null : current))
+					.onBackpressureLatest();
+		});
+	}
+
+	/**
+	 * @return the number of purchases having subscribers
+	 */
+	int subscribedPurchases() {
+		return purchaseSinks.size();
+	}
+
+	/**
+	 * Sink of the events of a purchase, with its number of subscribers, only updated within the map.
+	 */
+	private static final class PurchaseSink {
+
+		private final Sinks.Many<PurchaseEventDTO> sink = Sinks.many().multicast().directBestEffort();
+		private int subscribers;
+	}
+}
@@ -0,0 +1,19 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.model.PurchaseOutboxEvent;
+import reactor.core.publisher.Mono;
+
+/**
+ * Destination of the purchase events relayed from the outbox, such as a message broker.
+ * <p>
+ * Events are delivered at least once: an event may be sent again after a failure or a restart, so consumers
+ * should deduplicate them by id. The events of a purchase are sent one at a time, in the order they were written in.
+ * An implementation declared as a {@code @Primary} bean replaces the {@link LoggingPurchaseEventSink}.
+ */
+public interface PurchaseEventSink {
+
+	/**
+	 * @return a Mono completing once the event is durably accepted, or failing for the event to be sent again later
+	 */
+	Mono<Void> send(PurchaseOutboxEvent event);
+}
@@ -0,0 +1,120 @@
+package com.maxenceraux.purse_test.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.maxenceraux.purse_test.config.IdempotencyProperties;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.repository.IdempotencyKeyRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Creates purchases at most once per idempotency key, so that a client retrying a creation gets the purchase
+ * it already created instead of a duplicate.
+ * <p>
+ * Keys are kept in a size and time bounded in-memory store of key to purchase id: concurrent creations with the same
+ * key share the first one, and a replay costs two cache lookups. When keys are persisted, the store is backed by the
+ * IDEMPOTENCY_KEY table, in which a key is claimed in the transaction creating its purchase, so that instances
+ * racing on the same key create a single purchase. A failed creation releases its key. A claim that times out waiting
+ * for a concurrent, still uncommitted, claim of the same key looks the key up again a few times with a backoff;
+ * a failure once the purchase is being written is not retried.
+ * The created purchase is only cached and counted in the statistics once the claim is committed. Expired keys are
+ * deleted in the background by {@link IdempotencyKeyCleanup}, or when they are used again.
+ */
+@Service
+public class PurchaseIdempotencyService {
+
+	private final PurchaseService purchaseService;
+	private final IdempotencyKeyRepository idempotencyKeyRepository;
+	private final TransactionalOperator transactionalOperator;
+	private final Duration timeToLive;
+	private final boolean persisted;
+	private final int lockRetries;
+	private final Duration lockBackoff;
+	private final AsyncCache<String, Long> purchaseIds;
+
+	public PurchaseIdempotencyService(PurchaseService purchaseService, IdempotencyKeyRepository idempotencyKeyRepository,
+									  TransactionalOperator transactionalOperator, IdempotencyProperties properties) {
+		this.purchaseService = purchaseService;
+		this.idempotencyKeyRepository = idempotencyKeyRepository;
+		this.transactionalOperator = transactionalOperator;
+		this.timeToLive = properties.timeToLive();
+		this.persisted = properties.persisted();
+		this.lockRetries = properties.lockRetries();
+		this.lockBackoff = properties.lockBackoff();
+		this.purchaseIds = Caffeine.newBuilder()
+				.maximumSize(properties.maximumSize())
+				.expireAfterWrite(properties.timeToLive())
+				.buildAsync();
+	}
+
+	/**
+	 * @return the purchase created with the idempotency key, creating it from the given one on first use of the key
+	 */
+	public Mono<Purchase> createPurchase(String idempotencyKey, Purchase purchase) {
+		// a client giving up must not cancel the creation that concurrent retries may be waiting for
+		return Mono.fromFuture(() -> purchaseIds.get(idempotencyKey, (key, executor) -> findOrCreate(key, purchase).toFuture()), true)
+				.flatMap(purchaseService::findPurchaseById);
+	}
+
+	private Mono<Long> findOrCreate(String idempotencyKey, Purchase purchase) {
+		if (!persisted) {
+			return purchaseService.createPurchase(purchase).map(Purchase::getId);
+		}
+		return Mono.defer(() -> idempotencyKeyRepository.findPurchaseId(idempotencyKey, notBefore()))
+				.onErrorMap(TransientDataAccessException.class, KeyUnavailableException::new)
+				.switchIfEmpty(Mono.defer(() -> claimAndCreate(idempotencyKey, purchase))
+						// another instance claimed the key first and has committed its purchase
+						.onErrorResume(DataIntegrityViolationException.class,
+								e -> idempotencyKeyRepository.findPurchaseId(idempotencyKey, notBefore())
+										.switchIfEmpty(Mono.error(e))))
+				// the concurrent claim was still uncommitted when waiting for its lock timed out, look the key up again
+				.retryWhen(Retry.backoff(lockRetries, lockBackoff)
+						.filter(KeyUnavailableException.class::isInstance)
+						.onRetryExhaustedThrow((spec, signal) -> signal.failure().getCause()));
+	}
+
+	/**
+	 * Claims the key, creates the purchase and sets it on the key in a single transaction. An expired key is deleted
+	 * beforehand, on its own, so that the transaction only ever locks the key being claimed.
+	 */
+	private Mono<Long> claimAndCreate(String idempotencyKey, Purchase purchase) {
+		return idempotencyKeyRepository.deleteIfCreatedUntil(idempotencyKey, notBefore())
+				.then(idempotencyKeyRepository.claim(idempotencyKey, now())
+						// only the lookup and the claim are retried: nothing is written yet, and the purchase still has no id
+						.onErrorMap(TransientDataAccessException.class, KeyUnavailableException::new)
+						.then(purchaseService.insertPurchase(purchase))
+						.flatMap(savedPurchase -> idempotencyKeyRepository.setPurchaseId(idempotencyKey, savedPurchase.getId())
+								.thenReturn(savedPurchase))
+						.as(transactionalOperator::transactional))
+				// only once committed, so that a rolled back purchase is neither cached nor counted
+				.doOnNext(purchaseService::created)
+				.map(Purchase::getId);
+	}
+
+	/**
+	 * Transient failure to look up or claim a key, after which the creation can be attempted again from the start.
+	 */
+	private static final class KeyUnavailableException extends RuntimeException {
+
+		KeyUnavailableException(TransientDataAccessException cause) {
+			super(cause);
+		}
+	}
+
+	private LocalDateTime notBefore() {
+		return now().minus(timeToLive);
+	}
+
+	private static LocalDateTime now() {
+		return LocalDateTime.now(ZoneOffset.UTC);
+	}
+}
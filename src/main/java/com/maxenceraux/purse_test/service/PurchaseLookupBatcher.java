@@ -0,0 +1,114 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.config.LookupBatchingProperties;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.repository.PurchaseRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Gathers the purchases looked up by id within a short window, up to a maximum batch size, and loads them
+ * with a single query before handing each lookup its own purchase. Under many concurrent lookups this replaces
+ * one round trip per lookup with one per batch, at the cost of at most one window of added latency.
+ */
+@Slf4j
+@Component
+public class PurchaseLookupBatcher {
+
+	private final PurchaseRepository purchaseRepository;
+	private final long windowNanos;
+	private final int maxBatchSize;
+	private final Queue<Lookup> pendingLookups = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	// owned rather than shared, so that the window keeps running on real time whatever the global schedulers are
+	private final Scheduler timer = Schedulers.newSingle("purchase-lookup-batcher", true);
+
+	public PurchaseLookupBatcher(PurchaseRepository purchaseRepository, LookupBatchingProperties properties) {
+		this.purchaseRepository = purchaseRepository;
+		this.windowNanos = properties.window().toNanos();
+		this.maxBatchSize = properties.maxBatchSize();
+	}
+
+	public Mono<Purchase> load(Long purchaseId) {
+		if (windowNanos == 0) {
+			return purchaseRepository.findByIdWithProducts(purchaseId);
+		}
+		return Mono.defer(() -> {
+			var purchase = Sinks.<Purchase>one();
+			pendingLookups.add(new Lookup(purchaseId, purchase));
+			if (pendingCount.incrementAndGet() >= maxBatchSize) {
+				flush();
+			} else if (flushScheduled.compareAndSet(false, true)) {
+				timer.schedule(this::flushOnTimer, windowNanos, TimeUnit.NANOSECONDS);
+			}
+			return purchase.asMono();
+		});
+	}
+
+	private void flushOnTimer() {
+		// cleared before draining: a lookup added from now on is either drained below or schedules the next flush
+		flushScheduled.set(false);
+		flush();
+	}
+
+	private void flush() {
+		var batch = new ArrayList<Lookup>(maxBatchSize);
+		Lookup lookup;
+		while ((lookup = pendingLookups.poll()) != null) {
+			pendingCount.decrementAndGet();
+			batch.add(lookup);
+			if (batch.size() == maxBatchSize) {
+				loadBatch(batch);
+				batch = new ArrayList<>(maxBatchSize);
+			}
+		}
+		if (!batch.isEmpty()) {
+			loadBatch(batch);
+		}
+	}
+
+	private void loadBatch(List<Lookup> batch) {
+		var purchaseIds = batch.stream()
+				.map(Lookup::purchaseId)
+				.distinct()
+				.toList();
+		Mono.defer(() -> purchaseRepository.findAllWithProductsByIdIn(purchaseIds)
+						.collectMap(Purchase::getId, Function.identity()))
+				.subscribe(
+						purchases -> batch.forEach(lookup -> {
+							var purchase = purchases.get(lookup.purchaseId());
+							if (purchase == null) {
+								lookup.purchase().tryEmitEmpty();
+							} else {
+								lookup.purchase().tryEmitValue(purchase);
+							}
+						}),
+						e -> {
+							log.warn("Could not load a batch of {} purchases", purchaseIds.size(), e);
+							batch.forEach(lookup -> lookup.purchase().tryEmitError(e));
+						});
+	}
+
+	@PreDestroy
+	void stop() {
+		timer.dispose();
+	}
+
+	private record Lookup(Long purchaseId, Sinks.One<Purchase> purchase) {
+	}
+}
@@ -0,0 +1,144 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers of the purchase operations, published as {@code purchase.operations} tagged with the {@code operation}
+ * and its {@code outcome}, counters of the status transitions, published as {@code purchase.status.transitions},
+ * and counters of the version conflicts and retries of the updates, published as {@code purchase.update.conflicts}
+ * and {@code purchase.update.retries} tagged with the changed field as {@code operation}.
+ * <p>
+ * Every meter is registered up front, so that recording only reads the clock twice and never looks a meter up.
+ */
+@Component
+public class PurchaseMetrics {
+
+	public static final String CREATE = "create";
+	public static final String CREATE_BATCH = "createBatch";
+	public static final String FIND_BY_ID = "findById";
+	public static final String FIND_ALL = "findAll";
+	public static final String SEARCH = "search";
+	public static final String UPDATE_STATUS = "updateStatus";
+	public static final String CHANGE_PAYMENT_METHOD = "changePaymentMethod";
+
+	private final Map<String, OperationTimers> operationTimers;
+	private final Map<PaymentStatus, Counter> statusTransitions = new EnumMap<>(PaymentStatus.class);
+	private final Map<String, UpdateCounters> updateCounters;
+
+	public PurchaseMetrics(MeterRegistry meterRegistry) {
+		this.operationTimers = Map.of(
+				CREATE, new OperationTimers(meterRegistry, CREATE),
+				CREATE_BATCH, new OperationTimers(meterRegistry, CREATE_BATCH),
+				FIND_BY_ID, new OperationTimers(meterRegistry, FIND_BY_ID),
+				FIND_ALL, new OperationTimers(meterRegistry, FIND_ALL),
+				SEARCH, new OperationTimers(meterRegistry, SEARCH),
+				UPDATE_STATUS, new OperationTimers(meterRegistry, UPDATE_STATUS),
+				CHANGE_PAYMENT_METHOD, new OperationTimers(meterRegistry, CHANGE_PAYMENT_METHOD));
+		this.updateCounters = Map.of(
+				UPDATE_STATUS, new UpdateCounters(meterRegistry, "status"),
+				CHANGE_PAYMENT_METHOD, new UpdateCounters(meterRegistry, "paymentMethod"));
+		for (var status : PaymentStatus.values()) {
+			// a status has a single next one, so the previous status identifies the transition
+			if (status.next() != null) {
+				statusTransitions.put(status, Counter.builder("purchase.status.transitions")
+						.tag("from", status.name())
+						.tag("to", status.next().name())
+						.register(meterRegistry));
+			}
+		}
+	}
+
+	/**
+	 * Times the operation from subscription to completion, error or cancellation.
+	 */
+	public <T> Mono<T> timed(String operation, Mono<T> mono) {
+		var timers = operationTimers.get(operation);
+		return Mono.defer(() -> {
+			long start = System.nanoTime();
+			return mono.doFinally(signal -> timers.record(signal, System.nanoTime() - start));
+		});
+	}
+
+	/**
+	 * Times the operation from subscription to the last element, error or cancellation.
+	 */
+	public <T> Flux<T> timed(String operation, Flux<T> flux) {
+		var timers = operationTimers.get(operation);
+		return Flux.defer(() -> {
+			long start = System.nanoTime();
+			return flux.doFinally(signal -> timers.record(signal, System.nanoTime() - start));
+		});
+	}
+
+	public void statusTransition(PaymentStatus previousStatus, PaymentStatus status) {
+		var counter = statusTransitions.get(previousStatus);
+		if (counter != null && status.equals(previousStatus.next())) {
+			counter.increment();
+		}
+	}
+
+	/**
+	 * Counts an update of {@link #UPDATE_STATUS} or {@link #CHANGE_PAYMENT_METHOD} losing the race against another one.
+	 */
+	public void updateConflict(String operation) {
+		updateCounters.get(operation).conflicts.increment();
+	}
+
+	/**
+	 * Counts an update of {@link #UPDATE_STATUS} or {@link #CHANGE_PAYMENT_METHOD} retried after a conflict.
+	 */
+	public void updateRetry(String operation) {
+		updateCounters.get(operation).retries.increment();
+	}
+
+	private static final class UpdateCounters {
+
+		private final Counter conflicts;
+		private final Counter retries;
+
+		UpdateCounters(MeterRegistry meterRegistry, String field) {
+			this.conflicts = meterRegistry.counter("purchase.update.conflicts", "operation", field);
+			this.retries = meterRegistry.counter("purchase.update.retries", "operation", field);
+		}
+	}
+
+	private static final class OperationTimers {
+
+		private final Timer success;
+		private final Timer error;
+		private final Timer cancelled;
+
+		OperationTimers(MeterRegistry meterRegistry, String operation) {
+			this.success = timer(meterRegistry, operation, "success");
+			this.error = timer(meterRegistry, operation, "error");
+			this.cancelled = timer(meterRegistry, operation, "cancelled");
+		}
+
+		void record(SignalType signal, long nanos) {
+			var timer = switch (signal) {
+				case ON_ERROR -> error;
+				case CANCEL -> cancelled;
+				default -> success;
+			};
+			timer.record(nanos, TimeUnit.NANOSECONDS);
+		}
+
+		private static Timer timer(MeterRegistry meterRegistry, String operation, String outcome) {
+			return Timer.builder("purchase.operations")
+					.tag("operation", operation)
+					.tag("outcome", outcome)
+					.register(meterRegistry);
+		}
+	}
+}
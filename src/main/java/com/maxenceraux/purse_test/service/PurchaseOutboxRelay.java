@@ -0,0 +1,180 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.config.OutboxProperties;
+import com.maxenceraux.purse_test.model.PurchaseOutboxEvent;
+import com.maxenceraux.purse_test.repository.PurchaseOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the purchase outbox to the {@link PurchaseEventSink} in the background, so that downstream systems
+ * never add their latency to the purchase API.
+ * <p>
+ * Every poll reads a batch of the oldest events, sends the events of up to {@code concurrency} purchases at a time,
+ * each purchase's events one after the other, then deletes the events sent. When an event fails, the following events
+ * of its purchase are kept back, so that they are sent again in order on the next poll: delivery is at least once,
+ * ordered per purchase. A full batch is followed by another one right away, which skips the purchases kept back
+ * during the poll, so that the events of a purchase that keeps failing do not hold back those of the others.
+ * <p>
+ * Relayed events are counted in {@code purchase.outbox.delivered}, failed sends in {@code purchase.outbox.failures},
+ * the time from writing to delivery is timed in {@code purchase.outbox.lag}, and the age of the oldest event read
+ * by the last poll is published as {@code purchase.outbox.oldest.age}.
+ */
+@Slf4j
+@Component
+public class PurchaseOutboxRelay implements SmartLifecycle {
+
+	private final PurchaseOutboxRepository purchaseOutboxRepository;
+	private final PurchaseEventSink purchaseEventSink;
+	private final OutboxProperties properties;
+	private final Counter delivered;
+	private final Counter failures;
+	private final Timer lag;
+	private final AtomicLong oldestAgeMillis = new AtomicLong();
+	private volatile Disposable relay;
+
+	public PurchaseOutboxRelay(PurchaseOutboxRepository purchaseOutboxRepository, PurchaseEventSink purchaseEventSink,
+							   OutboxProperties properties, MeterRegistry meterRegistry) {
+		this.purchaseOutboxRepository = purchaseOutboxRepository;
+		this.purchaseEventSink = purchaseEventSink;
+		this.properties = properties;
+		this.delivered = meterRegistry.counter("purchase.outbox.delivered");
+		this.failures = meterRegistry.counter("purchase.outbox.failures");
+		this.lag = Timer.builder("purchase.outbox.lag").register(meterRegistry);
+		Gauge.builder("purchase.outbox.oldest.age", oldestAgeMillis, AtomicLong::get)
+				.baseUnit("milliseconds")
+				.register(meterRegistry);
+	}
+
+	@Override
+	public void start() {
+		if (!properties.relayEnabled()) {
+			return;
+		}
+		relay = Flux.interval(properties.pollInterval())
+				.onBackpressureDrop()
+				.concatMap(tick -> drain()
+						.onErrorResume(e -> {
+							log.warn("Could not relay the purchase outbox", e);
+							return Mono.empty();
+						}), 1)
+				.subscribe();
+	}
+
+	@Override
+	public void stop() {
+		var current = relay;
+		if (current != null) {
+			current.dispose();
+			relay = null;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return relay != null;
+	}
+
+	/**
+	 * Relays batches of the oldest events until one is not full, skipping the purchases kept back by a failure.
+	 *
+	 * @return the number of events sent and deleted from the outbox
+	 */
+	public Mono<Integer> drain() {
+		return Mono.defer(() -> {
+			Set<Long> keptBack = ConcurrentHashMap.newKeySet();
+			return drainBatch(keptBack)
+					.expand(batch -> batch.read() == properties.batchSize() ? drainBatch(keptBack) : Mono.empty())
+					.reduce(0, (sent, batch) -> sent + batch.sent());
+		});
+	}
+
+	/**
+	 * Relays one batch of the oldest events not about the given purchases, adding to them the purchases whose events
+	 * failed.
+	 */
+	private Mono<Batch> drainBatch(Set<Long> keptBack) {
+		var oldest = keptBack.isEmpty()
+				? purchaseOutboxRepository.findOldest(properties.batchSize())
+				: purchaseOutboxRepository.findOldestExcluding(keptBack, properties.batchSize());
+		return oldest.collectList()
+				.flatMap(events -> {
+					if (events.isEmpty()) {
+						if (keptBack.isEmpty()) {
+							oldestAgeMillis.set(0);
+						}
+						return Mono.just(new Batch(0, 0));
+					}
+					// only the first batch of a poll, or one following fully sent ones, starts with the oldest event
+					if (keptBack.isEmpty()) {
+						oldestAgeMillis.set(Duration.between(events.get(0).getCreatedAt(), now()).toMillis());
+					}
+					return Flux.fromIterable(byPurchase(events).values())
+							.flatMap(purchaseEvents -> sendInOrder(purchaseEvents, keptBack), properties.concurrency())
+							.collectList()
+							.flatMap(sentIds -> sentIds.isEmpty()
+									? Mono.just(new Batch(events.size(), 0))
+									: purchaseOutboxRepository.deleteByIdIn(sentIds).thenReturn(new Batch(events.size(), sentIds.size())));
+				});
+	}
+
+	/**
+	 * Sends the events of a purchase one after the other, stopping at the first failure, after which the purchase
+	 * is kept back.
+	 *
+	 * @return the ids of the events sent
+	 */
+	private Flux<Long> sendInOrder(List<PurchaseOutboxEvent> events, Set<Long> keptBack) {
+		return Flux.fromIterable(events)
+				.concatMap(event -> purchaseEventSink.send(event)
+						.then(Mono.fromSupplier(() -> {
+							delivered.increment();
+							lag.record(Duration.between(event.getCreatedAt(), now()));
+							return event.getId();
+						})))
+				.onErrorResume(e -> {
+					keptBack.add(events.get(0).getPurchaseId());
+					failures.increment();
+					log.warn("Could not send the events of purchase {}, they will be sent again", events.get(0).getPurchaseId(), e);
+					return Flux.empty();
+				});
+	}
+
+	private static Map<Long, List<PurchaseOutboxEvent>> byPurchase(List<PurchaseOutboxEvent> events) {
+		var byPurchase = new LinkedHashMap<Long, List<PurchaseOutboxEvent>>();
+		for (var event : events) {
+			byPurchase.computeIfAbsent(event.getPurchaseId(), purchaseId -> new ArrayList<>()).add(event);
+		}
+		return byPurchase;
+	}
+
+	private static LocalDateTime now() {
+		return LocalDateTime.now(ZoneOffset.UTC);
+	}
+
+	/**
+	 * @param read number of events read from the outbox
+	 * @param sent number of events sent and deleted
+	 */
+	private record Batch(int read, int sent) {
+	}
+}
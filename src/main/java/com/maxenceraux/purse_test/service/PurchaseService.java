@@ -1,15 +1,34 @@
 package com.maxenceraux.purse_test.service;
 
+import com.maxenceraux.purse_test.config.UpdateRetryProperties;
+import com.maxenceraux.purse_test.exception.ConcurrentPurchaseUpdateException;
 import com.maxenceraux.purse_test.exception.MissingPurchaseException;
 import com.maxenceraux.purse_test.model.PaymentMethod;
 import com.maxenceraux.purse_test.model.PaymentStatus;
 import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseEventDTO;
+import com.maxenceraux.purse_test.model.PurchaseOutboxEvent;
+import com.maxenceraux.purse_test.model.PurchaseSearchCriteria;
+import com.maxenceraux.purse_test.model.PurchaseStatisticsDTO;
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import com.maxenceraux.purse_test.repository.PurchaseOutboxRepository;
 import com.maxenceraux.purse_test.repository.PurchaseRepository;
 import com.maxenceraux.purse_test.repository.PurchasedProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 @RequiredArgsConstructor
 @Service
@@ -17,51 +36,201 @@ public class PurchaseService {
 
 	private final PurchaseRepository purchaseRepository;
 	private final PurchasedProductRepository purchasedProductRepository;
+	private final TransactionalOperator transactionalOperator;
+	private final UpdateRetryProperties updateRetryProperties;
+	private final PurchaseCache purchaseCache;
+	private final PurchaseLookupBatcher purchaseLookupBatcher;
+	private final PurchaseMetrics purchaseMetrics;
+	private final PurchaseEventHub purchaseEventHub;
+	private final PurchaseStatistics purchaseStatistics;
+	private final PurchaseOutboxRepository purchaseOutboxRepository;
 
 	public Flux<Purchase> findAllPurchases() {
-		return purchaseRepository.findAll()
-				.flatMap(purchase ->
-						purchasedProductRepository.findAllByPurchaseId(purchase.getId())
-						.collectList()
-						.map(purchase::withPurchasedProducts));
+		return purchaseMetrics.timed(PurchaseMetrics.FIND_ALL, purchaseRepository.findAllWithProducts());
+	}
+
+	public Flux<Purchase> findAllPurchases(long after) {
+		return purchaseMetrics.timed(PurchaseMetrics.FIND_ALL, purchaseRepository.findAllWithProductsAfter(after));
+	}
+
+	public Flux<Purchase> findAllPurchases(long after, int limit) {
+		return purchaseMetrics.timed(PurchaseMetrics.FIND_ALL, purchaseRepository.findPageWithProducts(after, limit));
+	}
+
+	public Flux<Purchase> searchPurchases(PurchaseSearchCriteria criteria, long after, int limit) {
+		return purchaseMetrics.timed(PurchaseMetrics.SEARCH, purchaseRepository.searchPageWithProducts(criteria, after, limit));
 	}
 	
 	public Mono<Purchase> findPurchaseById(Long purchaseId) {
-		return Mono.zip(
-				purchaseRepository.findById(purchaseId),
-				purchasedProductRepository.findAllByPurchaseId(purchaseId).collectList(),
-                Purchase::withPurchasedProducts);
+		return purchaseMetrics.timed(PurchaseMetrics.FIND_BY_ID, purchaseCache.get(purchaseId, purchaseLookupBatcher::load));
 	}
 	
 	public Mono<Purchase> createPurchase(Purchase purchase) {
-		purchase.initPurchase();
-		return purchaseRepository.save(purchase)
+		return purchaseMetrics.timed(PurchaseMetrics.CREATE, insertPurchase(purchase)
+				.as(transactionalOperator::transactional))
+				.doOnNext(this::created);
+	}
+
+	/**
+	 * Writes a purchase, its products and its creation event, within the transaction of the caller.
+	 * Nothing else is updated, the caller must call {@link #created(Purchase)} once the transaction is committed.
+	 */
+	Mono<Purchase> insertPurchase(Purchase purchase) {
+		return Mono.defer(() -> {
+					purchase.initPurchase();
+					return purchaseRepository.save(purchase);
+				})
 				.flatMap(savedPurchase -> {
 					var purchasedProducts = purchase.getPurchasedProducts();
 					purchasedProducts.forEach(purchasedProduct -> purchasedProduct.setPurchaseId(savedPurchase.getId()));
-					return purchasedProductRepository.saveAll(purchasedProducts)
+					return purchasedProductRepository.insertAll(purchasedProducts)
 							.collectList()
 							.map(savedPurchase::withPurchasedProducts);
-				});
+				})
+				.flatMap(savedPurchase -> purchaseOutboxRepository.save(outboxEvent(PurchaseOutboxEvent.Type.CREATED, savedPurchase))
+						.thenReturn(savedPurchase));
 	}
 
-	public Mono<Purchase> updateStatus(Long purchaseId, PaymentStatus status) {
-		return findPurchaseById(purchaseId)
-				.switchIfEmpty(Mono.error(new MissingPurchaseException(purchaseId)))
-				.map(purchase -> {
-					purchase.updateStatus(status);
-					return purchase;
+	/**
+	 * Caches a committed purchase and adds it to the statistics.
+	 */
+	void created(Purchase purchase) {
+		purchaseCache.put(purchase);
+		purchaseStatistics.created(purchase);
+	}
+
+	/**
+	 * Creates several purchases in a single transaction, with one batched statement for the purchases
+	 * and one for all their products.
+	 * <p>
+	 * An amount that overflows fails the returned flux, like any other error.
+	 *
+	 * @return the created purchases, in the order they were given
+	 */
+	public Flux<Purchase> createPurchases(List<Purchase> purchases) {
+		return Flux.defer(() -> {
+			purchases.forEach(Purchase::initPurchase);
+			return createInitializedPurchases(purchases);
+		});
+	}
+
+	/**
+	 * Creates several purchases like {@link #createPurchases(List)}, for purchases whose amount and status were
+	 * already set by {@link Purchase#initPurchase()}.
+	 */
+	Flux<Purchase> createInitializedPurchases(List<Purchase> purchases) {
+		return purchaseMetrics.timed(PurchaseMetrics.CREATE_BATCH, purchaseRepository.insertAll(purchases)
+				.collectList()
+				.flatMapMany(savedPurchases -> {
+					var purchasedProducts = new ArrayList<PurchasedProduct>();
+					savedPurchases.forEach(savedPurchase -> savedPurchase.getPurchasedProducts().forEach(purchasedProduct -> {
+						purchasedProduct.setPurchaseId(savedPurchase.getId());
+						purchasedProducts.add(purchasedProduct);
+					}));
+					return purchasedProductRepository.insertAll(purchasedProducts)
+							.thenMany(purchaseOutboxRepository.saveAll(savedPurchases.stream()
+									.map(savedPurchase -> outboxEvent(PurchaseOutboxEvent.Type.CREATED, savedPurchase))
+									.toList()))
+							.thenMany(Flux.fromIterable(savedPurchases));
 				})
-				.flatMap(purchaseRepository::save);
+				.as(transactionalOperator::transactional))
+				.doOnNext(this::created);
+	}
+
+	public Mono<Purchase> updateStatus(Long purchaseId, PaymentStatus status) {
+		return purchaseMetrics.timed(PurchaseMetrics.UPDATE_STATUS, Mono.defer(() -> {
+			var previousStatus = new AtomicReference<PaymentStatus>();
+			return update(purchaseId, PurchaseMetrics.UPDATE_STATUS, PurchaseOutboxEvent.Type.STATUS_CHANGED, purchase -> {
+				previousStatus.set(purchase.getStatus());
+				purchase.updateStatus(status);
+				return purchaseRepository.updateStatus(purchase.getId(), purchase.getVersion(), status);
+			})
+					.doOnNext(purchase -> {
+						purchaseStatistics.statusChanged(purchase, previousStatus.get());
+						purchaseMetrics.statusTransition(previousStatus.get(), status);
+					});
+		}))
+				.doOnNext(purchase -> purchaseEventHub.publish(PurchaseEventDTO.of(PurchaseEventDTO.Type.STATUS_CHANGED, purchase)));
 	}
 
 	public Mono<Purchase> changePaymentMethod(Long purchaseId, PaymentMethod paymentMethod) {
-		return findPurchaseById(purchaseId)
+		return purchaseMetrics.timed(PurchaseMetrics.CHANGE_PAYMENT_METHOD, Mono.defer(() -> {
+			var previousPaymentMethod = new AtomicReference<PaymentMethod>();
+			return update(purchaseId, PurchaseMetrics.CHANGE_PAYMENT_METHOD, PurchaseOutboxEvent.Type.PAYMENT_METHOD_CHANGED, purchase -> {
+				previousPaymentMethod.set(purchase.getPaymentMethod());
+				purchase.updatePaymentMethod(paymentMethod);
+				return purchaseRepository.updatePaymentMethod(purchase.getId(), purchase.getVersion(), paymentMethod);
+			})
+					.doOnNext(purchase -> purchaseStatistics.paymentMethodChanged(purchase, previousPaymentMethod.get()));
+		}))
+				.doOnNext(purchase -> purchaseEventHub.publish(PurchaseEventDTO.of(PurchaseEventDTO.Type.PAYMENT_METHOD_CHANGED, purchase)));
+	}
+
+	/**
+	 * @return the number and total amount of the purchases by currency, status and payment method
+	 */
+	public PurchaseStatisticsDTO getStatistics() {
+		return purchaseStatistics.snapshot();
+	}
+
+	/**
+	 * Streams the changes of a purchase, starting with its current state, until it reaches its final status.
+	 * Changes are listened to before the current state is read, so that none made meanwhile is missed,
+	 * and any event not newer than one already sent is skipped.
+	 */
+	public Flux<PurchaseEventDTO> purchaseEvents(Long purchaseId) {
+		return Flux.defer(() -> {
+			var sentVersion = new AtomicLong(-1);
+			return Flux.merge(
+							purchaseEventHub.events(purchaseId),
+							findPurchaseById(purchaseId)
+									.switchIfEmpty(Mono.error(new MissingPurchaseException(purchaseId)))
+									.map(purchase -> PurchaseEventDTO.of(PurchaseEventDTO.Type.CURRENT, purchase)))
+					.filter(event -> event.getVersion() > sentVersion.getAndAccumulate(event.getVersion(), Math::max))
+					.takeUntil(event -> event.getStatus().next() == null);
+		});
+	}
+
+	/**
+	 * Streams the changes of every purchase, from now on.
+	 */
+	public Flux<PurchaseEventDTO> allPurchaseEvents() {
+		return purchaseEventHub.events();
+	}
+
+	/**
+	 * Applies a change to the current state of a purchase, then writes it only if the purchase still has the version
+	 * it was read with. When another update won the race, the change is applied again on a fresh snapshot, so that
+	 * the transition rules of {@link Purchase} are checked against the state actually being replaced.
+	 * The purchase and its products are read with a single query, the write only touches the changed column,
+	 * and is committed along with its event in the outbox. The cache is refreshed with the updated purchase.
+	 */
+	private Mono<Purchase> update(Long purchaseId, String operation, PurchaseOutboxEvent.Type eventType,
+								  Function<Purchase, Mono<Integer>> change) {
+		return Mono.defer(() -> purchaseRepository.findByIdWithProducts(purchaseId))
 				.switchIfEmpty(Mono.error(new MissingPurchaseException(purchaseId)))
-				.map(purchase -> {
-					purchase.updatePaymentMethod(paymentMethod);
-					return purchase;
-				})
-				.flatMap(purchaseRepository::save);
+				.flatMap(purchase -> change.apply(purchase)
+						.flatMap(updatedRows -> {
+							if (updatedRows == 0) {
+								purchaseMetrics.updateConflict(operation);
+								return Mono.error(new OptimisticLockingFailureException(
+										"Purchase " + purchaseId + " was modified since version " + purchase.getVersion()));
+							}
+							purchase.setVersion(purchase.getVersion() + 1);
+							return purchaseOutboxRepository.save(outboxEvent(eventType, purchase))
+									.thenReturn(purchase);
+						})
+						.as(transactionalOperator::transactional))
+				.retryWhen(Retry.backoff(updateRetryProperties.maxAttempts(), updateRetryProperties.minBackoff())
+						.maxBackoff(updateRetryProperties.maxBackoff())
+						.filter(OptimisticLockingFailureException.class::isInstance)
+						.doBeforeRetry(signal -> purchaseMetrics.updateRetry(operation))
+						.onRetryExhaustedThrow((spec, signal) -> new ConcurrentPurchaseUpdateException(purchaseId)))
+				.doOnNext(purchaseCache::put)
+				.doOnError(e -> purchaseCache.invalidate(purchaseId));
+	}
+
+	private static PurchaseOutboxEvent outboxEvent(PurchaseOutboxEvent.Type type, Purchase purchase) {
+		return PurchaseOutboxEvent.of(type, purchase, LocalDateTime.now(ZoneOffset.UTC));
 	}
 }
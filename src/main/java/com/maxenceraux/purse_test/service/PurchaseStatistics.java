@@ -0,0 +1,113 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.model.Money;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseStatisticsDTO;
+import com.maxenceraux.purse_test.model.PurchaseTotals;
+import com.maxenceraux.purse_test.repository.PurchaseRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number and total amount of the purchases by currency, status and payment method, kept up to date as purchases
+ * are created and updated, so that reading them does not depend on the number of purchases.
+ * <p>
+ * Totals are loaded with a single GROUP BY query once the application context is ready, before requests are served.
+ * Each combination of currency, status and payment method has its own lock-free accumulators, so that concurrent
+ * writes only contend when they touch the same combination. A read may see the count of a write before its amount.
+ */
+@Component
+@RequiredArgsConstructor
+public class PurchaseStatistics implements SmartInitializingSingleton {
+
+	private final PurchaseRepository purchaseRepository;
+	private final Map<Key, Totals> totals = new ConcurrentHashMap<>();
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		reload().block();
+	}
+
+	/**
+	 * Replaces the totals with the ones computed by the database.
+	 */
+	public Mono<Void> reload() {
+		return purchaseRepository.sumByCurrencyAndStatusAndPaymentMethod()
+				.collectList()
+				.doOnNext(rows -> {
+					totals.clear();
+					for (PurchaseTotals row : rows) {
+						add(new Key(row.getCurrency(), row.getStatus(), row.getPaymentMethod()), row.getPurchases(), row.getAmount().minorUnits());
+					}
+				})
+				.then();
+	}
+
+	public void created(Purchase purchase) {
+		add(Key.of(purchase), 1, purchase.getAmount().minorUnits());
+	}
+
+	public void statusChanged(Purchase purchase, PaymentStatus previousStatus) {
+		add(new Key(purchase.getCurrency(), previousStatus, purchase.getPaymentMethod()), -1, -purchase.getAmount().minorUnits());
+		add(Key.of(purchase), 1, purchase.getAmount().minorUnits());
+	}
+
+	public void paymentMethodChanged(Purchase purchase, PaymentMethod previousPaymentMethod) {
+		add(new Key(purchase.getCurrency(), purchase.getStatus(), previousPaymentMethod), -1, -purchase.getAmount().minorUnits());
+		add(Key.of(purchase), 1, purchase.getAmount().minorUnits());
+	}
+
+	public PurchaseStatisticsDTO snapshot() {
+		var byCurrency = new TreeMap<String, PurchaseStatisticsDTO.Totals>();
+		var byStatus = new EnumMap<PaymentStatus, Map<String, PurchaseStatisticsDTO.Totals>>(PaymentStatus.class);
+		var byPaymentMethod = new EnumMap<PaymentMethod, Map<String, PurchaseStatisticsDTO.Totals>>(PaymentMethod.class);
+		totals.forEach((key, keyTotals) -> {
+			long purchases = keyTotals.purchases.sum();
+			if (purchases == 0) {
+				return;
+			}
+			var amount = new Money(keyTotals.amount.sum()).toBigDecimal(key.currency());
+			merge(byCurrency, key.currency(), purchases, amount);
+			merge(byStatus.computeIfAbsent(key.status(), status -> new TreeMap<>()), key.currency(), purchases, amount);
+			merge(byPaymentMethod.computeIfAbsent(key.paymentMethod(), paymentMethod -> new TreeMap<>()), key.currency(), purchases, amount);
+		});
+		return new PurchaseStatisticsDTO(byCurrency, byStatus, byPaymentMethod);
+	}
+
+	private void add(Key key, long purchases, long amountInMinorUnits) {
+		var keyTotals = totals.computeIfAbsent(key, k -> new Totals());
+		keyTotals.purchases.add(purchases);
+		keyTotals.amount.add(amountInMinorUnits);
+	}
+
+	private static void merge(Map<String, PurchaseStatisticsDTO.Totals> byCurrency, String currency, long purchases, BigDecimal amount) {
+		byCurrency.merge(currency, new PurchaseStatisticsDTO.Totals(purchases, amount), (current, added) -> new PurchaseStatisticsDTO.Totals(
+				current.getPurchases() + added.getPurchases(),
+				current.getAmount().add(added.getAmount())));
+	}
+
+	private record Key(String currency, PaymentStatus status, PaymentMethod paymentMethod) {
+
+		static Key of(Purchase purchase) {
+			return new Key(purchase.getCurrency(), purchase.getStatus(), purchase.getPaymentMethod());
+		}
+	}
+
+	private static final class Totals {
+
+		private final LongAdder purchases = new LongAdder();
+		// in minor units
+		private final LongAdder amount = new LongAdder();
+	}
+}
@@ -4,6 +4,7 @@ CREATE TABLE IF NOT EXISTS PURCHASE (
     currency VARCHAR(255) NOT NULL,
     payment_method VARCHAR(255) NOT NULL,
     status VARCHAR(255) NOT NULL,
+    version INT NOT NULL DEFAULT 0,
     PRIMARY KEY (id)
 );
 CREATE TABLE IF NOT EXISTS PURCHASED_PRODUCT (
@@ -0,0 +1,8 @@
+-- money is read as BigDecimal, store it exactly instead of as a binary floating point number
+ALTER TABLE PURCHASE ALTER COLUMN amount DECIMAL(19, 2) NOT NULL;
+ALTER TABLE PURCHASED_PRODUCT ALTER COLUMN price DECIMAL(19, 2) NOT NULL;
+
+-- products are always read by purchase, purchases are filtered by status and currency
+CREATE INDEX IF NOT EXISTS IDX_PURCHASED_PRODUCT_PURCHASE_ID ON PURCHASED_PRODUCT (purchase_id);
+CREATE INDEX IF NOT EXISTS IDX_PURCHASE_STATUS ON PURCHASE (status);
+CREATE INDEX IF NOT EXISTS IDX_PURCHASE_CURRENCY ON PURCHASE (currency);
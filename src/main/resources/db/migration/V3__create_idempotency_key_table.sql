@@ -0,0 +1,9 @@
+-- purchase_id stays null while the purchase of a key is being created
+CREATE TABLE IF NOT EXISTS IDEMPOTENCY_KEY (
+    idempotency_key VARCHAR(255) NOT NULL,
+    purchase_id INT,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (idempotency_key),
+    FOREIGN KEY (purchase_id) REFERENCES PURCHASE(id)
+);
+CREATE INDEX IF NOT EXISTS IDX_IDEMPOTENCY_KEY_CREATED_AT ON IDEMPOTENCY_KEY (created_at);
@@ -0,0 +1,4 @@
+-- search filters on payment method and amount range, and on product reference through an EXISTS sub-query
+CREATE INDEX IF NOT EXISTS IDX_PURCHASE_PAYMENT_METHOD ON PURCHASE (payment_method);
+CREATE INDEX IF NOT EXISTS IDX_PURCHASE_AMOUNT ON PURCHASE (amount);
+CREATE INDEX IF NOT EXISTS IDX_PURCHASED_PRODUCT_REFERENCE ON PURCHASED_PRODUCT (reference, purchase_id);
@@ -0,0 +1,14 @@
+-- money is stored as a whole number of minor units (cents), read and summed without BigDecimal
+DROP INDEX IF EXISTS IDX_PURCHASE_AMOUNT;
+ALTER TABLE PURCHASE ADD COLUMN amount_minor_units BIGINT;
+UPDATE PURCHASE SET amount_minor_units = CAST(amount * 100 AS BIGINT);
+ALTER TABLE PURCHASE DROP COLUMN amount;
+ALTER TABLE PURCHASE ALTER COLUMN amount_minor_units RENAME TO amount;
+ALTER TABLE PURCHASE ALTER COLUMN amount SET NOT NULL;
+CREATE INDEX IF NOT EXISTS IDX_PURCHASE_AMOUNT ON PURCHASE (amount);
+
+ALTER TABLE PURCHASED_PRODUCT ADD COLUMN price_minor_units BIGINT;
+UPDATE PURCHASED_PRODUCT SET price_minor_units = CAST(price * 100 AS BIGINT);
+ALTER TABLE PURCHASED_PRODUCT DROP COLUMN price;
+ALTER TABLE PURCHASED_PRODUCT ALTER COLUMN price_minor_units RENAME TO price;
+ALTER TABLE PURCHASED_PRODUCT ALTER COLUMN price SET NOT NULL;
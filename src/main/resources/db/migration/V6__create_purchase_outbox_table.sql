@@ -0,0 +1,13 @@
+-- events written in the same transaction as the purchase change they describe, deleted once relayed
+CREATE TABLE IF NOT EXISTS PURCHASE_OUTBOX (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    purchase_id INT NOT NULL,
+    type VARCHAR(255) NOT NULL,
+    amount BIGINT NOT NULL,
+    currency VARCHAR(255) NOT NULL,
+    payment_method VARCHAR(255) NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    version INT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,18 @@
+-- minor units follow the fraction digits of the currency instead of always being cents:
+-- prices are rescaled, rounded for currencies without minor units, and purchase amounts summed again from them
+UPDATE PURCHASED_PRODUCT SET price = CAST(ROUND(price / 100.0) AS BIGINT)
+WHERE purchase_id IN (SELECT id FROM PURCHASE WHERE currency IN
+    ('BIF', 'CLP', 'DJF', 'GNF', 'ISK', 'JPY', 'KMF', 'KRW', 'PYG', 'RWF', 'UGX', 'UYI', 'VND', 'VUV', 'XAF', 'XOF', 'XPF'));
+UPDATE PURCHASED_PRODUCT SET price = price * 10
+WHERE purchase_id IN (SELECT id FROM PURCHASE WHERE currency IN ('BHD', 'IQD', 'JOD', 'KWD', 'LYD', 'OMR', 'TND'));
+UPDATE PURCHASED_PRODUCT SET price = price * 100
+WHERE purchase_id IN (SELECT id FROM PURCHASE WHERE currency IN ('CLF', 'UYW'));
+
+UPDATE PURCHASE p SET amount = (SELECT COALESCE(SUM(pp.price * pp.quantity), 0) FROM PURCHASED_PRODUCT pp WHERE pp.purchase_id = p.id)
+WHERE currency IN ('BIF', 'CLP', 'DJF', 'GNF', 'ISK', 'JPY', 'KMF', 'KRW', 'PYG', 'RWF', 'UGX', 'UYI', 'VND', 'VUV', 'XAF', 'XOF', 'XPF',
+    'BHD', 'IQD', 'JOD', 'KWD', 'LYD', 'OMR', 'TND', 'CLF', 'UYW');
+
+UPDATE PURCHASE_OUTBOX o SET amount = (SELECT p.amount FROM PURCHASE p WHERE p.id = o.purchase_id)
+WHERE currency IN ('BIF', 'CLP', 'DJF', 'GNF', 'ISK', 'JPY', 'KMF', 'KRW', 'PYG', 'RWF', 'UGX', 'UYI', 'VND', 'VUV', 'XAF', 'XOF', 'XPF',
+    'BHD', 'IQD', 'JOD', 'KWD', 'LYD', 'OMR', 'TND', 'CLF', 'UYW')
+AND EXISTS (SELECT 1 FROM PURCHASE p WHERE p.id = o.purchase_id);
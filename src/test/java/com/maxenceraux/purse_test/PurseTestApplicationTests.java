@@ -1,13 +1,36 @@
 package com.maxenceraux.purse_test;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 @SpringBootTest
 class PurseTestApplicationTests {
 
+	@Autowired
+	private ConnectionFactory connectionFactory;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	@DisplayName("Should pool connections as configured and publish the pool gauges.")
+	void shouldPoolConnections() {
+		assertThat(connectionFactory).isInstanceOf(ConnectionPool.class);
+		assertThat(((ConnectionPool) connectionFactory).getMetrics().orElseThrow().getMaxAllocatedSize()).isEqualTo(20);
+
+		assertThat(meterRegistry.find("r2dbc.pool.acquired").gauge()).isNotNull();
+		assertThat(meterRegistry.find("r2dbc.pool.pending").gauge()).isNotNull();
+		assertThat(meterRegistry.find("r2dbc.pool.max.allocated").gauge().value()).isEqualTo(20);
+	}
 }
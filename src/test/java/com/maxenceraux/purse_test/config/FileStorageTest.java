@@ -0,0 +1,107 @@
+package com.maxenceraux.purse_test.config;
+
+import com.maxenceraux.purse_test.PurseTestApplication;
+import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.service.PurchaseService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileStorageTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("Should keep purchases across restarts in FILE mode.")
+    void shouldKeepPurchasesAcrossRestarts() {
+        Purchase created;
+        try (var context = start()) {
+            var purchaseService = context.getBean(PurchaseService.class);
+            created = purchaseService.createPurchase(newPurchase()).block();
+            purchaseService.updateStatus(created.getId(), PaymentStatus.AUTHORIZED).block();
+        }
+
+        try (var context = start()) {
+            var purchaseService = context.getBean(PurchaseService.class);
+            StepVerifier.create(purchaseService.findPurchaseById(created.getId()))
+                    .assertNext(purchase -> {
+                        assertThat(purchase.getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+                        assertThat(purchase.getVersion()).isEqualTo(1L);
+                        assertThat(purchase.getAmount()).isEqualTo(created.getAmount());
+                        assertThat(purchase.getPurchasedProducts()).hasSize(2);
+                    })
+                    .verifyComplete();
+            StepVerifier.create(purchaseService.createPurchase(newPurchase()))
+                    .assertNext(purchase -> assertThat(purchase.getId()).isGreaterThan(created.getId()))
+                    .verifyComplete();
+            assertThat(purchaseService.getStatistics().getByCurrency().get("EUR").getPurchases()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("Should recover every committed purchase after a crash in FILE mode.")
+    void shouldRecoverCommittedPurchasesAfterCrash() {
+        List<Purchase> created;
+        try (var context = start()) {
+            var purchaseService = context.getBean(PurchaseService.class);
+            created = purchaseService.createPurchases(List.of(newPurchase(), newPurchase(), newPurchase()))
+                    .collectList()
+                    .block();
+            purchaseService.updateStatus(created.get(0).getId(), PaymentStatus.AUTHORIZED).block();
+            // closes the files as a killed process would, without writing anything pending
+            context.getBean(DatabaseClient.class).sql("SHUTDOWN IMMEDIATELY")
+                    .then()
+                    .onErrorResume(e -> Mono.empty())
+                    .block();
+        }
+
+        try (var context = start()) {
+            var purchaseService = context.getBean(PurchaseService.class);
+            StepVerifier.create(purchaseService.findAllPurchases().collectList())
+                    .assertNext(purchases -> {
+                        assertThat(purchases).extracting(Purchase::getId)
+                                .containsExactlyElementsOf(created.stream().map(Purchase::getId).toList());
+                        assertThat(purchases.get(0).getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+                        assertThat(purchases).allSatisfy(purchase -> assertThat(purchase.getPurchasedProducts()).hasSize(2));
+                    })
+                    .verifyComplete();
+            StepVerifier.create(context.getBean(DatabaseClient.class)
+                            .sql("SELECT COUNT(*) AS migrations FROM SCHEMA_VERSION WHERE version = 1")
+                            .map(row -> row.get("migrations", Long.class))
+                            .one())
+                    .expectNext(1L)
+                    .verifyComplete();
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        var application = new SpringApplication(PurseTestApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        return application.run(
+                "--purchase.storage.mode=FILE",
+                "--purchase.storage.directory=" + directory,
+                "--purchase.outbox.relay-enabled=false",
+                "--logging.level.root=WARN");
+    }
+
+    private static Purchase newPurchase() {
+        return PurchaseFactory.buildPurchase(null, List.of(
+                PurchaseFactory.buildProduct("name", "ref", 3, new BigDecimal("33.10"), null),
+                PurchaseFactory.buildProduct("other", "ref2", 1, new BigDecimal("4.50"), null)));
+    }
+}
@@ -0,0 +1,44 @@
+package com.maxenceraux.purse_test.config;
+
+import com.maxenceraux.purse_test.service.LoggingPurchaseEventSink;
+import com.maxenceraux.purse_test.service.PurchaseEventSink;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboxConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(OutboxConfig.class);
+
+    @Test
+    @DisplayName("Should log relayed events by default.")
+    void shouldLogEventsByDefault() {
+        contextRunner.run(context -> assertThat(context.getBean(PurchaseEventSink.class))
+                .isInstanceOf(LoggingPurchaseEventSink.class));
+    }
+
+    @Test
+    @DisplayName("Should relay events to a primary sink instead of logging them.")
+    void shouldPreferPrimarySink() {
+        contextRunner.withUserConfiguration(BrokerSinkConfig.class)
+                .run(context -> assertThat(context.getBean(PurchaseEventSink.class))
+                        .isSameAs(context.getBean("brokerSink")));
+    }
+
+    @Configuration
+    static class BrokerSinkConfig {
+
+        @Bean
+        @Primary
+        PurchaseEventSink brokerSink() {
+            return event -> Mono.empty();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.maxenceraux.purse_test.config;
+
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchasedProduct;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PurchaseRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    PurchaseRuntimeHintsTest() {
+        new PurchaseRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    @DisplayName("Should register the entities and DTOs for reflection.")
+    void shouldRegisterBoundTypes() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(Purchase.class)
+                .withMemberCategories(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.DECLARED_FIELDS))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(PurchasedProduct.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(PurchaseDTO.class)).accepts(hints);
+    }
+
+    @Test
+    @DisplayName("Should include the SQL migrations.")
+    void shouldRegisterMigrations() {
+        assertThat(RuntimeHintsPredicates.resource().forResource("db/migration/V1__create_purchase_tables.sql"))
+                .accepts(hints);
+    }
+}
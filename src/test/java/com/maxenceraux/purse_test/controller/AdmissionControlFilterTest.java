@@ -0,0 +1,182 @@
+package com.maxenceraux.purse_test.controller;
+
+import com.maxenceraux.purse_test.config.AdmissionControlProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlFilterTest {
+
+    private static final String PROXY = "10.0.0.1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AdmissionControlFilter filter = new AdmissionControlFilter(
+            new AdmissionControlProperties(true, 1, 2, 100, 2, 1, 4, Duration.ofMillis(250), 0.5, 0.5, Set.of(PROXY)),
+            meterRegistry);
+
+    private final WebFilterChain completingChain = exchange -> Mono.empty();
+
+    @Test
+    @DisplayName("Should reject a client over its rate with 429 and Retry-After.")
+    void shouldRateLimitEachClient() {
+        assertThat(filter(get("/api/purchase/1", "192.168.0.1"), completingChain)).isNull();
+        assertThat(filter(get("/api/purchase/1", "192.168.0.1"), completingChain)).isNull();
+
+        var rejected = get("/api/purchase/1", "192.168.0.1");
+        assertThat(filter(rejected, completingChain)).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+
+        assertThat(filter(get("/api/purchase/1", "192.168.0.2"), completingChain)).isNull();
+        assertThat(meterRegistry.get("purchase.admission.rejected").tag("reason", "rate").tag("priority", "read").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should only trust the client id header from a trusted proxy.")
+    void shouldOnlyTrustClientIdFromTrustedProxies() {
+        // a client cannot get a fresh bucket by sending a new id of its own
+        assertThat(filter(forwarded("/api/purchase/1", "192.168.0.1", "id-1"), completingChain)).isNull();
+        assertThat(filter(forwarded("/api/purchase/1", "192.168.0.1", "id-2"), completingChain)).isNull();
+        assertThat(filter(forwarded("/api/purchase/1", "192.168.0.1", "id-3"), completingChain))
+                .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        // the clients behind a trusted proxy each have their own bucket
+        for (int i = 0; i < 3; i++) {
+            assertThat(filter(forwarded("/api/purchase/1", PROXY, "id-" + i), completingChain)).isNull();
+        }
+        assertThat(filter(forwarded("/api/purchase/1", PROXY, "id-0"), completingChain)).isNull();
+        assertThat(filter(forwarded("/api/purchase/1", PROXY, "id-0"), completingChain))
+                .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @Test
+    @DisplayName("Should shed reads before writes when the concurrency limit is reached.")
+    void shouldShedReadsBeforeWrites() {
+        var pending = Sinks.<Void>empty();
+        WebFilterChain pendingChain = exchange -> pending.asMono();
+
+        // reads may only use half of the limit of 2
+        var admittedRead = filter.filter(get("/api/purchase/1", "192.168.0.1"), pendingChain).subscribe();
+        var shedRead = get("/api/purchase/1", "192.168.0.2");
+        assertThat(filter(shedRead, pendingChain)).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(shedRead.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+
+        var admittedWrite = filter.filter(patch("/api/purchase/1/status", "192.168.0.3"), pendingChain).subscribe();
+        assertThat(filter(patch("/api/purchase/1/status", "192.168.0.4"), pendingChain)).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+        pending.tryEmitEmpty();
+        assertThat(admittedRead.isDisposed()).isTrue();
+        assertThat(admittedWrite.isDisposed()).isTrue();
+        assertThat(filter(get("/api/purchase/1", "192.168.0.2"), completingChain)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should decrease the concurrency limit on slow requests and increase it back on fast ones.")
+    void shouldAdaptConcurrencyLimit() {
+        var limit = new AdaptiveConcurrencyLimit(new AdmissionControlProperties(true, 1, 1, 1, 10, 2, 11, Duration.ofMillis(250), 0.5, 1, Set.of()));
+
+        assertThat(limit.tryAcquire(1)).isTrue();
+        limit.release(0, TimeUnit.SECONDS.toNanos(1), false, false);
+        assertThat(limit.limit()).isEqualTo(5);
+
+        long now = TimeUnit.SECONDS.toNanos(2);
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 5; j++) {
+                limit.tryAcquire(1);
+            }
+            for (int j = 0; j < 5; j++) {
+                limit.release(now, now + TimeUnit.MILLISECONDS.toNanos(1), false, false);
+            }
+            now += TimeUnit.MILLISECONDS.toNanos(1);
+        }
+        assertThat(limit.limit()).isGreaterThan(5);
+        assertThat(limit.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should decrease the concurrency limit once for a burst of concurrent slow requests.")
+    void shouldDecreaseConcurrencyLimitOncePerWindow() {
+        var limit = new AdaptiveConcurrencyLimit(new AdmissionControlProperties(true, 1, 1, 1, 64, 2, 128, Duration.ofMillis(250), 0.5, 1, Set.of()));
+
+        for (int i = 0; i < 32; i++) {
+            assertThat(limit.tryAcquire(1)).isTrue();
+        }
+        for (int i = 0; i < 32; i++) {
+            limit.release(0, TimeUnit.SECONDS.toNanos(1) + i, i % 2 == 0, false);
+        }
+        assertThat(limit.limit()).isEqualTo(32);
+
+        // a request admitted after the decrease, and still slow, decreases it again
+        assertThat(limit.tryAcquire(1)).isTrue();
+        limit.release(TimeUnit.SECONDS.toNanos(2), TimeUnit.SECONDS.toNanos(3), false, false);
+        assertThat(limit.limit()).isEqualTo(16);
+    }
+
+    @Test
+    @DisplayName("Should not lower the concurrency limit on slow streamed responses.")
+    void shouldNotAdaptConcurrencyLimitOnStreams() {
+        WebFilterChain slowChain = exchange -> Mono.delay(Duration.ofMillis(300)).then();
+
+        var stream = MockServerWebExchange.from(MockServerHttpRequest.get("/api/purchase/all")
+                .remoteAddress(address("192.168.0.1"))
+                .accept(MediaType.APPLICATION_NDJSON));
+        assertThat(filter(stream, slowChain)).isNull();
+        var batch = MockServerWebExchange.from(MockServerHttpRequest.post("/api/purchase/batch")
+                .remoteAddress(address("192.168.0.2")));
+        assertThat(filter(batch, slowChain)).isNull();
+        assertThat(meterRegistry.get("purchase.admission.limit").gauge().value()).isEqualTo(2);
+
+        assertThat(filter(get("/api/purchase/all", "192.168.0.3"), slowChain)).isNull();
+        assertThat(meterRegistry.get("purchase.admission.limit").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not limit requests outside of the purchase API.")
+    void shouldIgnoreOtherPaths() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(filter(get("/actuator/health", "192.168.0.1"), completingChain)).isNull();
+        }
+    }
+
+    private HttpStatus filter(MockServerWebExchange exchange, WebFilterChain chain) {
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+        var status = exchange.getResponse().getStatusCode();
+        return status == null ? null : HttpStatus.valueOf(status.value());
+    }
+
+    private static MockServerWebExchange get(String path, String clientAddress) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path).remoteAddress(address(clientAddress)));
+    }
+
+    private static MockServerWebExchange patch(String path, String clientAddress) {
+        return MockServerWebExchange.from(MockServerHttpRequest.patch(path).remoteAddress(address(clientAddress)));
+    }
+
+    private static MockServerWebExchange forwarded(String path, String proxyAddress, String clientId) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path)
+                .remoteAddress(address(proxyAddress))
+                .header(AdmissionControlFilter.CLIENT_ID_HEADER, clientId));
+    }
+
+    private static InetSocketAddress address(String address) {
+        return new InetSocketAddress(address, 12345);
+    }
+}
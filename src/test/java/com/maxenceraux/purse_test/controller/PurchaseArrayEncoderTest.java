@@ -0,0 +1,122 @@
+package com.maxenceraux.purse_test.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchasedProductDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PurchaseArrayEncoderTest {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final PurchaseArrayEncoder encoder = new PurchaseArrayEncoder(mapper, MediaType.APPLICATION_JSON, CHUNK_SIZE);
+
+    @Test
+    @DisplayName("Should only encode purchases in its format.")
+    void shouldOnlyEncodePurchasesAsJson() {
+        assertThat(encoder.canEncode(ResolvableType.forClass(PurchaseDTO.class), MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(encoder.canEncode(ResolvableType.forClass(PurchaseDTO.class), null)).isTrue();
+        assertThat(encoder.canEncode(ResolvableType.forClass(PurchaseDTO.class), MediaType.APPLICATION_NDJSON)).isFalse();
+        assertThat(encoder.canEncode(ResolvableType.forClass(PurchasedProductDTO.class), MediaType.APPLICATION_JSON)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should write the purchases as a JSON array packed into chunks.")
+    void shouldWriteChunkedArray() throws IOException {
+        var purchases = IntStream.rangeClosed(1, 500)
+                .mapToObj(PurchaseArrayEncoderTest::purchase)
+                .toList();
+
+        var chunks = encode(Flux.fromIterable(purchases));
+
+        assertThat(chunks.size()).isGreaterThan(1).isLessThan(purchases.size() / 4);
+        assertThat(chunks.subList(0, chunks.size() - 1)).allSatisfy(chunk -> assertThat(chunk.length).isGreaterThanOrEqualTo(CHUNK_SIZE));
+        assertThat(String.join("", chunks.stream().map(chunk -> new String(chunk, StandardCharsets.UTF_8)).toList()))
+                .isEqualTo(mapper.writeValueAsString(purchases));
+    }
+
+    @Test
+    @DisplayName("Should write an empty array when there is no purchase.")
+    void shouldWriteEmptyArray() {
+        var chunks = encode(Flux.empty());
+
+        assertThat(chunks).singleElement().satisfies(chunk -> assertThat(new String(chunk, StandardCharsets.UTF_8)).isEqualTo("[]"));
+    }
+
+    @Test
+    @DisplayName("Should write a single purchase as an object.")
+    void shouldWriteSinglePurchaseAsObject() throws IOException {
+        var expected = mapper.writeValueAsString(purchase(1));
+
+        var chunks = encode(Mono.just(purchase(1)));
+
+        assertThat(chunks).singleElement()
+                .satisfies(chunk -> assertThat(new String(chunk, StandardCharsets.UTF_8)).isEqualTo(expected));
+    }
+
+    @Test
+    @DisplayName("Should write the purchases as a Smile array.")
+    void shouldWriteSmileArray() throws IOException {
+        var smileMapper = new SmileMapper();
+        var smileEncoder = new PurchaseArrayEncoder(smileMapper, PurchaseMediaTypes.SMILE, CHUNK_SIZE);
+        var purchases = IntStream.rangeClosed(1, 100)
+                .mapToObj(PurchaseArrayEncoderTest::purchase)
+                .toList();
+
+        var chunks = encode(smileEncoder, PurchaseMediaTypes.SMILE, Flux.fromIterable(purchases));
+
+        var output = new ByteArrayOutputStream();
+        for (var chunk : chunks) {
+            output.write(chunk);
+        }
+        assertThat(smileMapper.readTree(output.toByteArray()))
+                .isEqualTo(smileMapper.readTree(smileMapper.writeValueAsBytes(purchases)));
+    }
+
+    private List<byte[]> encode(Publisher<PurchaseDTO> purchases) {
+        return encode(encoder, MediaType.APPLICATION_JSON, purchases);
+    }
+
+    private static List<byte[]> encode(PurchaseArrayEncoder encoder, MediaType mediaType, Publisher<PurchaseDTO> purchases) {
+        return encoder.encode(purchases, DefaultDataBufferFactory.sharedInstance, ResolvableType.forClass(PurchaseDTO.class),
+                        mediaType, Map.of())
+                .map(PurchaseArrayEncoderTest::bytes)
+                .collectList()
+                .block();
+    }
+
+    private static byte[] bytes(DataBuffer buffer) {
+        var bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        DataBufferUtils.release(buffer);
+        return bytes;
+    }
+
+    private static PurchaseDTO purchase(int id) {
+        return new PurchaseDTO((long) id, new BigDecimal("12.40"), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS,
+                List.of(new PurchasedProductDTO("name" + id, "ref" + id, 4, new BigDecimal("3.10"))));
+    }
+}
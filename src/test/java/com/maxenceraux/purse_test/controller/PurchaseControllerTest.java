@@ -2,43 +2,81 @@ package com.maxenceraux.purse_test.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.maxenceraux.purse_test.config.ConversionServiceConfig;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.maxenceraux.purse_test.config.AdmissionControlProperties;
+import com.maxenceraux.purse_test.config.EventStreamProperties;
+import com.maxenceraux.purse_test.config.PaginationProperties;
+import com.maxenceraux.purse_test.config.PurchaseResponseCacheProperties;
+import com.maxenceraux.purse_test.config.ResponseEncodingProperties;
+import com.maxenceraux.purse_test.exception.AmountOutOfRangeException;
+import com.maxenceraux.purse_test.exception.ConcurrentPurchaseUpdateException;
 import com.maxenceraux.purse_test.exception.MissingPurchaseException;
 import com.maxenceraux.purse_test.exception.UnsupportedMethodChangeException;
 import com.maxenceraux.purse_test.exception.UnsupportedStatusChangeException;
 import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.mapper.PurchaseDtoToPurchaseMapperImpl;
+import com.maxenceraux.purse_test.mapper.PurchaseMapper;
+import com.maxenceraux.purse_test.mapper.PurchaseToPurchaseDtoMapperImpl;
 import com.maxenceraux.purse_test.model.*;
+import com.maxenceraux.purse_test.service.PurchaseBatchService;
+import com.maxenceraux.purse_test.service.PurchaseIdempotencyService;
 import com.maxenceraux.purse_test.service.PurchaseService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.context.annotation.Import;
-import org.springframework.core.convert.ConversionService;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(PurchaseController.class)
-@Import({ConversionServiceConfig.class})
+@Import({PurchaseMapper.class, PurchaseToPurchaseDtoMapperImpl.class, PurchaseDtoToPurchaseMapperImpl.class,
+        SimpleMeterRegistry.class, PurchaseResponseCache.class})
+@EnableConfigurationProperties({PaginationProperties.class, EventStreamProperties.class, PurchaseResponseCacheProperties.class,
+        AdmissionControlProperties.class, ResponseEncodingProperties.class})
 class PurchaseControllerTest {
 
     @Autowired
     private WebTestClient webTestClient;
     @Autowired
-    private ConversionService conversionService;
+    private MeterRegistry meterRegistry;
 
     @MockitoBean
     private PurchaseService service;
 
+    @MockitoBean
+    private PurchaseBatchService batchService;
+
+    @MockitoBean
+    private PurchaseIdempotencyService idempotencyService;
+
     private final ObjectMapper mapper = new ObjectMapper();
 
+    private final SmileMapper smileMapper = new SmileMapper();
+
     @Test
     @DisplayName("Should fetch purchase by id.")
     void shouldFetchPurchaseById() throws JsonProcessingException {
@@ -59,16 +97,122 @@ class PurchaseControllerTest {
                 .json(mapper.writeValueAsString(purchaseDTO));
     }
 
+    @Test
+    @DisplayName("Should answer 304 when the purchase still matches the ETag.")
+    void shouldReturn304OnMatchingETag() {
+        var purchase = PurchaseFactory.buildPurchaseWithId(1L, BigDecimal.valueOf(12.4), List.of(PurchaseFactory.buildDefaultProduct()));
+
+        when(service.findPurchaseById(1L)).thenReturn(Mono.just(purchase));
+
+        webTestClient.get()
+                .uri("/api/purchase/1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals("ETag", "\"1-0\"");
+
+        webTestClient.get()
+                .uri("/api/purchase/1")
+                .ifNoneMatch("\"1-0\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should serve captured purchases without loading them again.")
+    void shouldServeCapturedPurchaseFromCache() throws JsonProcessingException {
+        var purchase = PurchaseFactory.buildPurchaseWithId(42L, BigDecimal.valueOf(12.4), List.of(PurchaseFactory.buildDefaultProduct()));
+        purchase.setStatus(PaymentStatus.CAPTURED);
+
+        var productDTO = new PurchasedProductDTO("name", "ref", 4, BigDecimal.valueOf(3.1));
+        var purchaseDTO = new PurchaseDTO(42L, BigDecimal.valueOf(12.4), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.CAPTURED, List.of(productDTO));
+
+        when(service.findPurchaseById(42L)).thenReturn(Mono.just(purchase));
+
+        for (int i = 0; i < 2; i++) {
+            webTestClient.get()
+                    .uri("/api/purchase/42")
+                    .exchange()
+                    .expectStatus()
+                    .is2xxSuccessful()
+                    .expectHeader()
+                    .valueEquals("ETag", "\"42-0\"")
+                    .expectBody()
+                    .json(mapper.writeValueAsString(purchaseDTO));
+        }
+
+        verify(service, times(1)).findPurchaseById(42L);
+    }
+
     @Test
     @DisplayName("Should return 404 on missing purchase.")
     void shouldReturn404OnMissingPurchase() {
         when(service.findPurchaseById(1L)).thenReturn(Mono.error(new MissingPurchaseException(1L)));
+        var errors = meterRegistry.counter("purchase.errors", "exception", "MissingPurchaseException");
+        var errorsBefore = errors.count();
 
         webTestClient.get()
                 .uri("/api/purchase/1")
                 .exchange()
                 .expectStatus()
                 .isNotFound();
+
+        assertThat(errors.count()).isEqualTo(errorsBefore + 1);
+    }
+
+    @Test
+    @DisplayName("Should stream purchase changes as server-sent events named after their type.")
+    void shouldStreamPurchaseEvents() {
+        var current = new PurchaseEventDTO(PurchaseEventDTO.Type.CURRENT, 1L, PaymentStatus.IN_PROGRESS, PaymentMethod.CREDIT_CARD, 0L);
+        var authorized = new PurchaseEventDTO(PurchaseEventDTO.Type.STATUS_CHANGED, 1L, PaymentStatus.AUTHORIZED, PaymentMethod.CREDIT_CARD, 1L);
+
+        when(service.purchaseEvents(1L)).thenReturn(Flux.just(current, authorized));
+
+        var events = webTestClient.get()
+                .uri("/api/purchase/1/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<PurchaseEventDTO>>() {
+                })
+                .getResponseBody();
+
+        StepVerifier.create(events)
+                .assertNext(event -> {
+                    assertThat(event.event()).isEqualTo("CURRENT");
+                    assertThat(event.data()).isEqualTo(current);
+                })
+                .assertNext(event -> {
+                    assertThat(event.event()).isEqualTo("STATUS_CHANGED");
+                    assertThat(event.data()).isEqualTo(authorized);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should return purchase statistics.")
+    void shouldReturnStatistics() {
+        var totals = new PurchaseStatisticsDTO.Totals(2, BigDecimal.valueOf(24.8));
+        when(service.getStatistics()).thenReturn(new PurchaseStatisticsDTO(
+                Map.of("EUR", totals),
+                Map.of(PaymentStatus.IN_PROGRESS, Map.of("EUR", totals)),
+                Map.of(PaymentMethod.CREDIT_CARD, Map.of("EUR", totals))));
+
+        webTestClient.get()
+                .uri("/api/purchase/stats")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.byCurrency.EUR.purchases").isEqualTo(2)
+                .jsonPath("$.byCurrency.EUR.amount").isEqualTo(24.8)
+                .jsonPath("$.byStatus.IN_PROGRESS.EUR.purchases").isEqualTo(2)
+                .jsonPath("$.byPaymentMethod.CREDIT_CARD.EUR.amount").isEqualTo(24.8);
     }
 
     @Test
@@ -85,7 +229,7 @@ class PurchaseControllerTest {
         var productDTO2 = new PurchasedProductDTO("name2", "ref2", 3, BigDecimal.valueOf(10.1));
         var purchaseDTO2 = new PurchaseDTO(2L, BigDecimal.valueOf(30.3), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS, List.of(productDTO2));
 
-        when(service.findAllPurchases()).thenReturn(Flux.just(purchase, purchase2));
+        when(service.findAllPurchases(0L, 100)).thenReturn(Flux.just(purchase, purchase2));
 
         webTestClient.get()
                 .uri("/api/purchase/all")
@@ -96,17 +240,119 @@ class PurchaseControllerTest {
                 .json(mapper.writeValueAsString(List.of(purchaseDTO, purchaseDTO2)));
     }
 
+    @Test
+    @DisplayName("Should find a page of purchases after a cursor.")
+    void shouldFindPageOfPurchasesAfterCursor() throws JsonProcessingException {
+        var product2 = PurchaseFactory.buildProduct("name2", "ref2", 3, BigDecimal.valueOf(10.1), 2L);
+        var purchase2 = PurchaseFactory.buildPurchaseWithId(2L, BigDecimal.valueOf(30.3), List.of(product2));
+
+        var productDTO2 = new PurchasedProductDTO("name2", "ref2", 3, BigDecimal.valueOf(10.1));
+        var purchaseDTO2 = new PurchaseDTO(2L, BigDecimal.valueOf(30.3), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS, List.of(productDTO2));
+
+        when(service.findAllPurchases(1L, 1)).thenReturn(Flux.just(purchase2));
+
+        webTestClient.get()
+                .uri("/api/purchase/all?after=1&limit=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .json(mapper.writeValueAsString(List.of(purchaseDTO2)));
+    }
+
+    @Test
+    @DisplayName("Should cap the page size.")
+    void shouldCapPageSize() {
+        when(service.findAllPurchases(0L, 1000)).thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri("/api/purchase/all?limit=5000")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .json("[]");
+    }
+
+    @Test
+    @DisplayName("Should return 400 for invalid page size.")
+    void shouldReturn400ForInvalidPageSize() {
+        webTestClient.get()
+                .uri("/api/purchase/all?limit=0")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Should search purchases with the filters given.")
+    void shouldSearchPurchases() throws JsonProcessingException {
+        var product2 = PurchaseFactory.buildProduct("name2", "ref2", 3, BigDecimal.valueOf(10.1), 2L);
+        var purchase2 = PurchaseFactory.buildPurchaseWithId(2L, BigDecimal.valueOf(30.3), List.of(product2));
+
+        var productDTO2 = new PurchasedProductDTO("name2", "ref2", 3, BigDecimal.valueOf(10.1));
+        var purchaseDTO2 = new PurchaseDTO(2L, BigDecimal.valueOf(30.3), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS, List.of(productDTO2));
+
+        var criteria = new PurchaseSearchCriteria(PaymentStatus.IN_PROGRESS, null, "EUR", Money.of(new BigDecimal("20"), "EUR"), null, "ref2");
+        when(service.searchPurchases(criteria, 1L, 100)).thenReturn(Flux.just(purchase2));
+
+        webTestClient.get()
+                .uri("/api/purchase/search?status=IN_PROGRESS&currency=EUR&minAmount=20&productReference=ref2&after=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .json(mapper.writeValueAsString(List.of(purchaseDTO2)));
+    }
+
+    @Test
+    @DisplayName("Should return 400 for invalid search filter.")
+    void shouldReturn400ForInvalidSearchFilter() {
+        webTestClient.get()
+                .uri("/api/purchase/search?status=UNKNOWN")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Should stream all purchases as ndjson.")
+    void shouldStreamAllPurchases() throws JsonProcessingException {
+        var product = PurchaseFactory.buildDefaultProduct();
+        var purchase = PurchaseFactory.buildPurchaseWithId(1L, new BigDecimal("12.40"), List.of(product));
+        var product2 = PurchaseFactory.buildProduct("name2", "ref2", 3, new BigDecimal("10.10"), 2L);
+        var purchase2 = PurchaseFactory.buildPurchaseWithId(2L, new BigDecimal("30.30"), List.of(product2));
+
+        var productDTO = new PurchasedProductDTO("name", "ref", 4, new BigDecimal("3.10"));
+        var purchaseDTO = new PurchaseDTO(1L, new BigDecimal("12.40"), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS, List.of(productDTO));
+        var productDTO2 = new PurchasedProductDTO("name2", "ref2", 3, new BigDecimal("10.10"));
+        var purchaseDTO2 = new PurchaseDTO(2L, new BigDecimal("30.30"), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS, List.of(productDTO2));
+
+        when(service.findAllPurchases(0L)).thenReturn(Flux.just(purchase, purchase2));
+
+        webTestClient.get()
+                .uri("/api/purchase/all")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .isEqualTo(mapper.writeValueAsString(purchaseDTO) + "\n" + mapper.writeValueAsString(purchaseDTO2) + "\n");
+    }
+
     @Test
     @DisplayName("Should create purchase.")
     void shouldCreatePurchase() throws JsonProcessingException {
         var productDTO = new PurchasedProductDTO("name", "ref", 4, BigDecimal.valueOf(3.1));
         var purchaseDTO = new PurchaseDTO(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, List.of(productDTO));
 
-        var productIn = new PurchasedProduct(null, "name", "ref", 4, BigDecimal.valueOf(3.1), null);
-        var purchaseIn = new Purchase(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, List.of(productIn));
+        var productIn = new PurchasedProduct(null, "name", "ref", 4, Money.of(BigDecimal.valueOf(3.1), "EUR"), null);
+        var purchaseIn = new Purchase(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, null, List.of(productIn));
 
-        var productOut = new PurchasedProduct(1L, "name", "ref", 4, BigDecimal.valueOf(3.1), 1L);
-        var purchaseOut = new Purchase(1L, BigDecimal.valueOf(12.4), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS, List.of(productOut));
+        var productOut = new PurchasedProduct(1L, "name", "ref", 4, Money.of(BigDecimal.valueOf(3.1), "EUR"), 1L);
+        var purchaseOut = new Purchase(1L, Money.of(BigDecimal.valueOf(12.4), "EUR"), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS, 0L, List.of(productOut));
 
         var productDTOOut = new PurchasedProductDTO("name", "ref", 4, BigDecimal.valueOf(3.1));
         var purchaseDTOOut = new PurchaseDTO(1L, BigDecimal.valueOf(12.4), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS, List.of(productDTOOut));
@@ -124,11 +370,155 @@ class PurchaseControllerTest {
                 .json(mapper.writeValueAsString(purchaseDTOOut));
     }
 
+    @Test
+    @DisplayName("Should create purchase from and to Smile.")
+    void shouldCreatePurchaseInSmile() throws IOException {
+        var productDTO = new PurchasedProductDTO("name", "ref", 4, BigDecimal.valueOf(3.1));
+        var purchaseDTO = new PurchaseDTO(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, List.of(productDTO));
+
+        var productIn = new PurchasedProduct(null, "name", "ref", 4, Money.of(BigDecimal.valueOf(3.1), "EUR"), null);
+        var purchaseIn = new Purchase(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, null, List.of(productIn));
+
+        var productOut = new PurchasedProduct(1L, "name", "ref", 4, Money.of(BigDecimal.valueOf(3.1), "EUR"), 1L);
+        var purchaseOut = new Purchase(1L, Money.of(BigDecimal.valueOf(12.4), "EUR"), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS, 0L, List.of(productOut));
+
+        var purchaseDTOOut = new PurchaseDTO(1L, new BigDecimal("12.40"), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS,
+                List.of(new PurchasedProductDTO("name", "ref", 4, new BigDecimal("3.10"))));
+
+        when(service.createPurchase(purchaseIn))
+                .thenReturn(Mono.just(purchaseOut));
+
+        var body = webTestClient.post()
+                .uri("/api/purchase")
+                .contentType(PurchaseMediaTypes.SMILE)
+                .accept(PurchaseMediaTypes.SMILE)
+                .bodyValue(smileMapper.writeValueAsBytes(purchaseDTO))
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectHeader()
+                .contentType(PurchaseMediaTypes.SMILE)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(smileMapper.readTree(body)).isEqualTo(smileMapper.readTree(smileMapper.writeValueAsBytes(purchaseDTOOut)));
+    }
+
+    @Test
+    @DisplayName("Should serve purchases in Smile to clients asking for it.")
+    void shouldServePurchasesInSmile() throws IOException {
+        var purchase = PurchaseFactory.buildPurchaseWithId(1L, new BigDecimal("12.40"), List.of(PurchaseFactory.buildDefaultProduct()));
+        var purchaseDTO = new PurchaseDTO(1L, new BigDecimal("12.40"), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS,
+                List.of(new PurchasedProductDTO("name", "ref", 4, new BigDecimal("3.10"))));
+
+        when(service.findPurchaseById(1L)).thenReturn(Mono.just(purchase));
+        when(service.findAllPurchases(0L, 100)).thenReturn(Flux.just(purchase));
+
+        var one = webTestClient.get()
+                .uri("/api/purchase/1")
+                .accept(PurchaseMediaTypes.SMILE)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals("ETag", "\"1-0-smile\"")
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        var all = webTestClient.get()
+                .uri("/api/purchase/all")
+                .accept(PurchaseMediaTypes.SMILE)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(smileMapper.readTree(one)).isEqualTo(smileMapper.readTree(smileMapper.writeValueAsBytes(purchaseDTO)));
+        assertThat(smileMapper.readTree(all)).isEqualTo(smileMapper.readTree(smileMapper.writeValueAsBytes(List.of(purchaseDTO))));
+    }
+
+    @Test
+    @DisplayName("Should serve JSON to clients preferring it over Smile, whatever the order of the Accept header.")
+    void shouldServeJsonWhenPreferredOverSmile() throws JsonProcessingException {
+        var purchase = PurchaseFactory.buildPurchaseWithId(1L, new BigDecimal("12.40"), List.of(PurchaseFactory.buildDefaultProduct()));
+        var purchaseDTO = new PurchaseDTO(1L, new BigDecimal("12.40"), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS,
+                List.of(new PurchasedProductDTO("name", "ref", 4, new BigDecimal("3.10"))));
+
+        when(service.findPurchaseById(1L)).thenReturn(Mono.just(purchase));
+
+        webTestClient.get()
+                .uri("/api/purchase/1")
+                .header(HttpHeaders.ACCEPT, "application/x-jackson-smile;q=0.1, application/json")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_JSON)
+                .expectHeader()
+                .valueEquals("ETag", "\"1-0\"")
+                .expectBody()
+                .json(mapper.writeValueAsString(purchaseDTO));
+    }
+
+    @Test
+    @DisplayName("Should create purchase once per idempotency key.")
+    void shouldCreatePurchaseWithIdempotencyKey() {
+        var productDTO = new PurchasedProductDTO("name", "ref", 4, BigDecimal.valueOf(3.1));
+        var purchaseDTO = new PurchaseDTO(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, List.of(productDTO));
+
+        var productIn = new PurchasedProduct(null, "name", "ref", 4, Money.of(BigDecimal.valueOf(3.1), "EUR"), null);
+        var purchaseIn = new Purchase(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, null, List.of(productIn));
+
+        var productOut = new PurchasedProduct(1L, "name", "ref", 4, Money.of(BigDecimal.valueOf(3.1), "EUR"), 1L);
+        var purchaseOut = new Purchase(1L, Money.of(BigDecimal.valueOf(12.4), "EUR"), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS, 0L, List.of(productOut));
+
+        when(idempotencyService.createPurchase("key-1", purchaseIn))
+                .thenReturn(Mono.just(purchaseOut));
+
+        webTestClient.post()
+                .uri("/api/purchase")
+                .header("Idempotency-Key", "key-1")
+                .bodyValue(purchaseDTO)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(1);
+
+        verify(service, never()).createPurchase(any());
+    }
+
+    @Test
+    @DisplayName("Should create purchases in batch.")
+    void shouldCreatePurchasesInBatch() throws JsonProcessingException {
+        var productDTO = new PurchasedProductDTO("name", "ref", 4, BigDecimal.valueOf(3.1));
+        var purchaseDTO = new PurchaseDTO(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, List.of(productDTO));
+        var invalidPurchaseDTO = new PurchaseDTO(null, null, "", PaymentMethod.CREDIT_CARD, null, List.of(productDTO));
+
+        var results = List.of(
+                PurchaseBatchResultDTO.created(0, 1L),
+                PurchaseBatchResultDTO.rejected(1, List.of("currency must not be blank")));
+
+        when(batchService.createPurchases(any())).thenReturn(Flux.fromIterable(results));
+
+        webTestClient.post()
+                .uri("/api/purchase/batch")
+                .bodyValue(List.of(purchaseDTO, invalidPurchaseDTO))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .json(mapper.writeValueAsString(results));
+    }
+
     @Test
     @DisplayName("Should patch payment method.")
     void shouldPatchPaymentMethod() throws JsonProcessingException {
-        var productOut = new PurchasedProduct(1L, "name", "ref", 4, BigDecimal.valueOf(3.1), 1L);
-        var purchaseOut = new Purchase(1L, BigDecimal.valueOf(12.4), "EUR", PaymentMethod.PAYPAL, PaymentStatus.IN_PROGRESS, List.of(productOut));
+        var productOut = new PurchasedProduct(1L, "name", "ref", 4, Money.of(BigDecimal.valueOf(3.1), "EUR"), 1L);
+        var purchaseOut = new Purchase(1L, Money.of(BigDecimal.valueOf(12.4), "EUR"), "EUR", PaymentMethod.PAYPAL, PaymentStatus.IN_PROGRESS, 0L, List.of(productOut));
 
         var productDTOOut = new PurchasedProductDTO("name", "ref", 4, BigDecimal.valueOf(3.1));
         var purchaseDTOOut = new PurchaseDTO(1L, BigDecimal.valueOf(12.4), "EUR", PaymentMethod.PAYPAL, PaymentStatus.IN_PROGRESS, List.of(productDTOOut));
@@ -178,8 +568,8 @@ class PurchaseControllerTest {
     @Test
     @DisplayName("Should patch status.")
     void shouldPatchStatus() throws JsonProcessingException {
-        var productOut = new PurchasedProduct(1L, "name", "ref", 4, BigDecimal.valueOf(3.1), 1L);
-        var purchaseOut = new Purchase(1L, BigDecimal.valueOf(12.4), "EUR", PaymentMethod.PAYPAL, PaymentStatus.CAPTURED, List.of(productOut));
+        var productOut = new PurchasedProduct(1L, "name", "ref", 4, Money.of(BigDecimal.valueOf(3.1), "EUR"), 1L);
+        var purchaseOut = new Purchase(1L, Money.of(BigDecimal.valueOf(12.4), "EUR"), "EUR", PaymentMethod.PAYPAL, PaymentStatus.CAPTURED, 1L, List.of(productOut));
 
         var productDTOOut = new PurchasedProductDTO("name", "ref", 4, BigDecimal.valueOf(3.1));
         var purchaseDTOOut = new PurchaseDTO(1L, BigDecimal.valueOf(12.4), "EUR", PaymentMethod.PAYPAL, PaymentStatus.CAPTURED, List.of(productDTOOut));
@@ -226,4 +616,44 @@ class PurchaseControllerTest {
                 .isBadRequest();
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Should return 409 for concurrent status change.")
+    void shouldReturn409ForConcurrentStatusChange() {
+        when(service.updateStatus(1L, PaymentStatus.CAPTURED))
+                .thenReturn(Mono.error(new ConcurrentPurchaseUpdateException(1L)));
+
+        webTestClient.patch()
+                .uri("/api/purchase/1/status")
+                .bodyValue(PaymentStatus.CAPTURED)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    @DisplayName("Should return 400 for an amount out of range, and 500 for any other arithmetic error.")
+    void shouldReturn400OnlyForAmountOutOfRange() {
+        var purchaseDTO = new PurchaseDTO(null, null, "EUR", PaymentMethod.CREDIT_CARD, null,
+                List.of(new PurchasedProductDTO("name", "ref", 4, new BigDecimal("3.10"))));
+
+        when(service.createPurchase(any()))
+                .thenReturn(Mono.error(new AmountOutOfRangeException("Amount out of range", new ArithmeticException("long overflow"))))
+                .thenReturn(Mono.error(new ArithmeticException("/ by zero")));
+
+        webTestClient.post()
+                .uri("/api/purchase")
+                .bodyValue(purchaseDTO)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("Amount out of range");
+        webTestClient.post()
+                .uri("/api/purchase")
+                .bodyValue(purchaseDTO)
+                .exchange()
+                .expectStatus()
+                .is5xxServerError();
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.maxenceraux.purse_test.factory;
 
+import com.maxenceraux.purse_test.model.Money;
 import com.maxenceraux.purse_test.model.PaymentMethod;
 import com.maxenceraux.purse_test.model.PaymentStatus;
 import com.maxenceraux.purse_test.model.Purchase;
@@ -11,38 +12,40 @@ import java.util.List;
 public class PurchaseFactory {
 
     public static Purchase buildDefaultPurchase() {
-        return buildPurchase(BigDecimal.valueOf(12.4), null);
+        return buildPurchase(new BigDecimal("12.40"), null);
     }
 
     public static Purchase buildPurchase(BigDecimal amount, List<PurchasedProduct> purchasedProducts) {
         return new Purchase(
                 null,
-                amount,
+                amount == null ? null : Money.of(amount, "EUR"),
                 "EUR",
                 PaymentMethod.CREDIT_CARD,
                 PaymentStatus.IN_PROGRESS,
+                null,
                 purchasedProducts);
     }
 
     public static Purchase buildPurchaseWithId(Long id, BigDecimal amount, List<PurchasedProduct> purchasedProducts) {
         return new Purchase(
                 id,
-                amount,
+                Money.of(amount, "EUR"),
                 "EUR",
                 PaymentMethod.CREDIT_CARD,
                 PaymentStatus.IN_PROGRESS,
+                0L,
                 purchasedProducts);
     }
 
     public static PurchasedProduct buildDefaultProduct() {
-        return buildProduct("name", "ref", 4, BigDecimal.valueOf(3.1), 3L);
+        return buildProduct("name", "ref", 4, new BigDecimal("3.10"), 3L);
     }
 
     public static PurchasedProduct buildProduct(String name, String reference, Integer quantity, BigDecimal price, Long purchaseId) {
-        return new PurchasedProduct(null, name, reference, quantity, price, purchaseId);
+        return new PurchasedProduct(null, name, reference, quantity, Money.of(price, "EUR"), purchaseId);
     }
 
     public static PurchasedProduct buildProductWithId(Long id, String name, String reference, Integer quantity, BigDecimal price, Long purchaseId) {
-        return new PurchasedProduct(id, name, reference, quantity, price, purchaseId);
+        return new PurchasedProduct(id, name, reference, quantity, Money.of(price, "EUR"), purchaseId);
     }
 }
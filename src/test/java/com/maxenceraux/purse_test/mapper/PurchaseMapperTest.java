@@ -0,0 +1,92 @@
+package com.maxenceraux.purse_test.mapper;
+
+import com.maxenceraux.purse_test.exception.AmountOutOfRangeException;
+import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchasedProductDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PurchaseMapperTest {
+
+    private final PurchaseMapper purchaseMapper = new PurchaseMapper(new PurchaseToPurchaseDtoMapperImpl(),
+            new PurchaseDtoToPurchaseMapperImpl());
+
+    @Test
+    @DisplayName("Should map a purchase and its products to their DTOs.")
+    void shouldMapToDto() {
+        var purchase = PurchaseFactory.buildPurchaseWithId(1L, new BigDecimal("12.40"),
+                List.of(PurchaseFactory.buildProductWithId(2L, "name", "ref", 4, new BigDecimal("3.10"), 1L)));
+
+        var purchaseDto = purchaseMapper.toDto(purchase);
+
+        assertThat(purchaseDto.getId()).isEqualTo(1L);
+        assertThat(purchaseDto.getAmount()).isEqualByComparingTo("12.40");
+        assertThat(purchaseDto.getStatus()).isEqualTo(PaymentStatus.IN_PROGRESS);
+        assertThat(purchaseDto.getPurchasedProducts())
+                .containsExactly(new PurchasedProductDTO("name", "ref", 4, new BigDecimal("3.10")));
+    }
+
+    @Test
+    @DisplayName("Should map a DTO to a purchase to create.")
+    void shouldMapToPurchase() {
+        var purchaseDto = new PurchaseDTO(null, null, "EUR", PaymentMethod.PAYPAL, null,
+                List.of(new PurchasedProductDTO("name", "ref", 4, new BigDecimal("3.10"))));
+
+        var purchase = purchaseMapper.toPurchase(purchaseDto);
+
+        assertThat(purchase.getId()).isNull();
+        assertThat(purchase.getVersion()).isNull();
+        assertThat(purchase.getPaymentMethod()).isEqualTo(PaymentMethod.PAYPAL);
+        assertThat(purchase.getPurchasedProducts()).singleElement().satisfies(purchasedProduct -> {
+            assertThat(purchasedProduct.getId()).isNull();
+            assertThat(purchasedProduct.getPrice().minorUnits()).isEqualTo(310);
+        });
+    }
+
+    @Test
+    @DisplayName("Should scale amounts by the currency of their purchase.")
+    void shouldScaleAmountsByCurrency() {
+        var kuwaitiPurchase = purchaseMapper.toPurchase(new PurchaseDTO(null, null, "KWD", PaymentMethod.PAYPAL, null,
+                List.of(new PurchasedProductDTO("name", "ref", 4, new BigDecimal("3.105")))));
+        var japanesePurchase = purchaseMapper.toPurchase(new PurchaseDTO(null, null, "JPY", PaymentMethod.PAYPAL, null,
+                List.of(new PurchasedProductDTO("name", "ref", 4, new BigDecimal("310")))));
+
+        assertThat(kuwaitiPurchase.getPurchasedProducts().get(0).getPrice().minorUnits()).isEqualTo(3105);
+        assertThat(purchaseMapper.toDto(kuwaitiPurchase).getPurchasedProducts().get(0).getPrice()).isEqualTo(new BigDecimal("3.105"));
+        assertThat(japanesePurchase.getPurchasedProducts().get(0).getPrice().minorUnits()).isEqualTo(310);
+        assertThat(purchaseMapper.toDto(japanesePurchase).getPurchasedProducts().get(0).getPrice()).isEqualTo(new BigDecimal("310"));
+    }
+
+    @Test
+    @DisplayName("Should reject prices with more fraction digits than their currency.")
+    void shouldRejectSubMinorUnitPrices() {
+        var purchaseDto = new PurchaseDTO(null, null, "JPY", PaymentMethod.PAYPAL, null,
+                List.of(new PurchasedProductDTO("name", "ref", 4, new BigDecimal("3.10"))));
+
+        assertThatThrownBy(() -> purchaseMapper.toPurchase(purchaseDto)).isInstanceOf(AmountOutOfRangeException.class);
+    }
+
+    @Test
+    @DisplayName("Should map lists and streams of purchases in order.")
+    void shouldMapListsAndStreams() {
+        var purchases = List.of(
+                PurchaseFactory.buildPurchaseWithId(1L, new BigDecimal("12.40"), List.of()),
+                PurchaseFactory.buildPurchaseWithId(2L, new BigDecimal("3.10"), List.of()));
+
+        assertThat(purchaseMapper.toDtos(purchases)).extracting(PurchaseDTO::getId).containsExactly(1L, 2L);
+        StepVerifier.create(purchaseMapper.toDtos(Flux.fromIterable(purchases)).map(PurchaseDTO::getId))
+                .expectNext(1L, 2L)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,51 @@
+package com.maxenceraux.purse_test.model;
+
+import com.maxenceraux.purse_test.exception.AmountOutOfRangeException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    @Test
+    @DisplayName("Should convert amounts from and to BigDecimal in minor units.")
+    void shouldConvertFromAndToBigDecimal() {
+        assertThat(Money.of(new BigDecimal("12.4"), "EUR")).isEqualTo(new Money(1240));
+        assertThat(Money.of(new BigDecimal("12.40"), "EUR")).isEqualTo(new Money(1240));
+        assertThat(new Money(1240).toBigDecimal("EUR")).isEqualTo(new BigDecimal("12.40"));
+    }
+
+    @Test
+    @DisplayName("Should scale amounts by the fraction digits of their currency.")
+    void shouldScaleByCurrency() {
+        assertThat(Money.of(new BigDecimal("1240"), "JPY")).isEqualTo(new Money(1240));
+        assertThat(new Money(1240).toBigDecimal("JPY")).isEqualTo(new BigDecimal("1240"));
+        assertThat(Money.of(new BigDecimal("12.405"), "KWD")).isEqualTo(new Money(12405));
+        assertThat(new Money(12405).toBigDecimal("KWD")).isEqualTo(new BigDecimal("12.405"));
+        assertThat(Money.of(new BigDecimal("12.40"), "unknown")).isEqualTo(new Money(1240));
+        assertThat(Money.of(new BigDecimal("12.40"), "XAU")).isEqualTo(new Money(1240));
+    }
+
+    @Test
+    @DisplayName("Should reject amounts with more fraction digits than their currency.")
+    void shouldRejectSubMinorUnits() {
+        assertThatThrownBy(() -> Money.of(new BigDecimal("12.405"), "EUR"))
+                .isInstanceOf(AmountOutOfRangeException.class);
+        assertThatThrownBy(() -> Money.of(new BigDecimal("12.5"), "JPY"))
+                .isInstanceOf(AmountOutOfRangeException.class);
+    }
+
+    @Test
+    @DisplayName("Should fail instead of overflowing.")
+    void shouldFailOnOverflow() {
+        var max = new Money(Long.MAX_VALUE);
+
+        assertThatThrownBy(() -> max.plus(new Money(1))).isInstanceOf(AmountOutOfRangeException.class);
+        assertThatThrownBy(() -> max.times(2)).isInstanceOf(AmountOutOfRangeException.class);
+        assertThat(new Money(310).times(4).plus(new Money(10))).isEqualTo(new Money(1250));
+    }
+}
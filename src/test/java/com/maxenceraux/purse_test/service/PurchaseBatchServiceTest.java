@@ -0,0 +1,111 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PurchaseBatchResultDTO;
+import com.maxenceraux.purse_test.model.PurchaseDTO;
+import com.maxenceraux.purse_test.model.PurchasedProductDTO;
+import com.maxenceraux.purse_test.repository.PurchaseRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// chunks written one at a time, for generated ids to follow the batch order
+@SpringBootTest(properties = {"purchase.batch.chunk-size=2", "purchase.batch.concurrency=1"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class PurchaseBatchServiceTest {
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private PurchaseBatchService service;
+
+    @Test
+    @DisplayName("Should create every purchase of the batch, chunk by chunk.")
+    void shouldCreateEveryPurchaseOfTheBatch() {
+        var purchases = IntStream.range(0, 5)
+                .mapToObj(i -> buildPurchaseDTO("EUR", "name" + i))
+                .toList();
+
+        StepVerifier.create(service.createPurchases(Flux.fromIterable(purchases)))
+                .expectNext(
+                        PurchaseBatchResultDTO.created(0, 1L),
+                        PurchaseBatchResultDTO.created(1, 2L),
+                        PurchaseBatchResultDTO.created(2, 3L),
+                        PurchaseBatchResultDTO.created(3, 4L),
+                        PurchaseBatchResultDTO.created(4, 5L))
+                .verifyComplete();
+
+        StepVerifier.create(purchaseRepository.count())
+                .expectNext(5L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should reject invalid purchases without failing the batch.")
+    void shouldRejectInvalidPurchasesWithoutFailingTheBatch() {
+        var purchases = List.of(
+                buildPurchaseDTO("EUR", "name"),
+                buildPurchaseDTO("", "name"),
+                buildPurchaseDTO("EUR", ""),
+                buildPurchaseDTO("EUR", "name".repeat(100)),
+                buildPurchaseDTO("EUR", "name"));
+
+        StepVerifier.create(service.createPurchases(Flux.fromIterable(purchases)))
+                .expectNext(
+                        PurchaseBatchResultDTO.created(0, 1L),
+                        PurchaseBatchResultDTO.rejected(1, List.of("currency must not be blank")),
+                        PurchaseBatchResultDTO.rejected(2, List.of("purchasedProducts[0].name must not be blank")))
+                .assertNext(result -> {
+                    // rejected by the database, which rolls back the rest of its chunk
+                    assertThat(result.getIndex()).isEqualTo(3);
+                    assertThat(result.getId()).isNull();
+                    assertThat(result.getErrors()).containsExactly(PurchaseBatchService.SAVE_FAILED);
+                })
+                .expectNext(PurchaseBatchResultDTO.created(4, 3L))
+                .verifyComplete();
+
+        StepVerifier.create(purchaseRepository.count())
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should reject a purchase whose amount overflows without failing the batch.")
+    void shouldRejectOverflowingPurchaseWithoutFailingTheBatch() {
+        var overflowingProduct = new PurchasedProductDTO("name", "ref", 10, new BigDecimal("9999999999999999.99"));
+        var purchases = List.of(
+                buildPurchaseDTO("EUR", "name"),
+                new PurchaseDTO(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, List.of(overflowingProduct)),
+                buildPurchaseDTO("EUR", "name"));
+
+        StepVerifier.create(service.createPurchases(Flux.fromIterable(purchases)))
+                .expectNext(PurchaseBatchResultDTO.created(0, 1L))
+                .assertNext(result -> {
+                    assertThat(result.getIndex()).isEqualTo(1);
+                    assertThat(result.getId()).isNull();
+                    assertThat(result.getErrors()).containsExactly("Amount out of range");
+                })
+                .expectNext(PurchaseBatchResultDTO.created(2, 2L))
+                .verifyComplete();
+
+        StepVerifier.create(purchaseRepository.count())
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
+    private static PurchaseDTO buildPurchaseDTO(String currency, String productName) {
+        var productDTO = new PurchasedProductDTO(productName, "ref", 4, BigDecimal.valueOf(3.1));
+        return new PurchaseDTO(null, null, currency, PaymentMethod.CREDIT_CARD, null, List.of(productDTO));
+    }
+}
@@ -0,0 +1,97 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.config.PurchaseCacheProperties;
+import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.Purchase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PurchaseCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PurchaseCache cache = new PurchaseCache(new PurchaseCacheProperties(10, Duration.ofMinutes(1)), meterRegistry);
+
+    private final Purchase purchase = PurchaseFactory.buildPurchaseWithId(1L, BigDecimal.valueOf(12.4), List.of());
+
+    @Test
+    @DisplayName("Should load a purchase once and serve it from the cache afterwards.")
+    void shouldLoadOnceThenHit() {
+        var loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(cache.get(1L, id -> Mono.fromSupplier(() -> {
+                        loads.incrementAndGet();
+                        return purchase;
+                    })))
+                    .expectNext(purchase)
+                    .verifyComplete();
+        }
+
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should share a pending load between concurrent lookups.")
+    void shouldCoalesceConcurrentMisses() {
+        var loads = new AtomicInteger();
+        var pendingLoad = Sinks.<Purchase>one();
+
+        var first = cache.get(1L, id -> {
+            loads.incrementAndGet();
+            return pendingLoad.asMono();
+        }).toFuture();
+        var second = cache.get(1L, id -> {
+            loads.incrementAndGet();
+            return pendingLoad.asMono();
+        }).toFuture();
+        pendingLoad.tryEmitValue(purchase);
+
+        assertThat(first).succeedsWithin(Duration.ofSeconds(1)).isEqualTo(purchase);
+        assertThat(second).succeedsWithin(Duration.ofSeconds(1)).isEqualTo(purchase);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should not cache missing purchases.")
+    void shouldNotCacheMissingPurchases() {
+        StepVerifier.create(cache.get(1L, id -> Mono.empty()))
+                .verifyComplete();
+
+        StepVerifier.create(cache.get(1L, id -> Mono.just(purchase)))
+                .expectNext(purchase)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should serve written purchases and reload invalidated ones.")
+    void shouldServeWrittenAndReloadInvalidated() {
+        var updatedPurchase = PurchaseFactory.buildPurchaseWithId(1L, BigDecimal.valueOf(12.4), List.of());
+        updatedPurchase.setStatus(PaymentStatus.AUTHORIZED);
+        cache.put(updatedPurchase);
+
+        StepVerifier.create(cache.get(1L, id -> Mono.just(purchase)))
+                .expectNext(updatedPurchase)
+                .verifyComplete();
+
+        cache.invalidate(1L);
+
+        StepVerifier.create(cache.get(1L, id -> Mono.just(purchase)))
+                .expectNext(purchase)
+                .verifyComplete();
+    }
+}
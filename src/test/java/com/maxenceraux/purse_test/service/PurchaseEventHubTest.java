@@ -0,0 +1,95 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.config.EventStreamProperties;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.PurchaseEventDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PurchaseEventHubTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PurchaseEventHub hub = new PurchaseEventHub(new EventStreamProperties(2, Duration.ofSeconds(15)), meterRegistry);
+
+    @Test
+    @DisplayName("Should keep the latest events for a firehose subscriber that does not keep up.")
+    void shouldDropOldestEventsOfSlowSubscriber() {
+        StepVerifier.create(hub.events(), 0)
+                .then(() -> {
+                    for (long version = 0; version < 5; version++) {
+                        hub.publish(event(1L, version));
+                    }
+                })
+                .thenRequest(2)
+                .expectNext(event(1L, 3), event(1L, 4))
+                .thenCancel()
+                .verify();
+
+        assertThat(meterRegistry.counter("purchase.events.dropped").count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should keep only the latest event of a purchase for a subscriber that does not keep up.")
+    void shouldKeepLatestEventOfPurchase() {
+        StepVerifier.create(hub.events(1L), 0)
+                .then(() -> {
+                    hub.publish(event(1L, 0));
+                    hub.publish(event(2L, 0));
+                    hub.publish(event(1L, 1));
+                })
+                .thenRequest(1)
+                .expectNext(event(1L, 1))
+                .then(() -> hub.publish(event(1L, 2)))
+                .thenRequest(1)
+                .expectNext(event(1L, 2))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Should share the sink of a purchase between its subscribers and remove it with the last one.")
+    void shouldRemovePurchaseSinkWithLastSubscriber() {
+        var first = new ArrayList<PurchaseEventDTO>();
+        var second = new ArrayList<PurchaseEventDTO>();
+        var firstSubscription = hub.events(1L).subscribe(first::add);
+        var secondSubscription = hub.events(1L).subscribe(second::add);
+        var otherSubscription = hub.events(2L).subscribe();
+        assertThat(hub.subscribedPurchases()).isEqualTo(2);
+
+        hub.publish(event(1L, 0));
+        firstSubscription.dispose();
+        hub.publish(event(1L, 1));
+        assertThat(hub.subscribedPurchases()).isEqualTo(2);
+
+        secondSubscription.dispose();
+        otherSubscription.dispose();
+        assertThat(hub.subscribedPurchases()).isZero();
+        assertThat(first).containsExactly(event(1L, 0));
+        assertThat(second).containsExactly(event(1L, 0), event(1L, 1));
+    }
+
+    @Test
+    @DisplayName("Should publish without subscribers.")
+    void shouldPublishWithoutSubscribers() {
+        hub.publish(event(1L, 0));
+
+        StepVerifier.create(hub.events())
+                .then(() -> hub.publish(event(1L, 1)))
+                .expectNext(event(1L, 1))
+                .thenCancel()
+                .verify();
+    }
+
+    private static PurchaseEventDTO event(Long purchaseId, long version) {
+        return new PurchaseEventDTO(PurchaseEventDTO.Type.STATUS_CHANGED, purchaseId, PaymentStatus.AUTHORIZED, PaymentMethod.CREDIT_CARD, version);
+    }
+}
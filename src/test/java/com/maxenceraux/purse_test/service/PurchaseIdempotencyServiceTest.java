@@ -0,0 +1,204 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.config.IdempotencyProperties;
+import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.repository.IdempotencyKeyRepository;
+import com.maxenceraux.purse_test.repository.PurchaseRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = "purchase.idempotency.persisted=true")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class PurchaseIdempotencyServiceTest {
+
+    @Autowired
+    private PurchaseIdempotencyService service;
+
+    @Autowired
+    private PurchaseService purchaseService;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @MockitoSpyBean
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private IdempotencyKeyCleanup idempotencyKeyCleanup;
+
+    @Test
+    @DisplayName("Should return the purchase created with a key instead of creating another one.")
+    void shouldReplayCreationWithSameKey() {
+        var created = service.createPurchase("key-1", newPurchase()).block();
+
+        StepVerifier.create(service.createPurchase("key-1", newPurchase()).map(Purchase::getId))
+                .expectNext(created.getId())
+                .verifyComplete();
+
+        StepVerifier.create(service.createPurchase("key-2", newPurchase()).map(Purchase::getId))
+                .assertNext(id -> assertThat(id).isNotEqualTo(created.getId()))
+                .verifyComplete();
+
+        StepVerifier.create(purchaseRepository.count())
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should create a single purchase for concurrent requests with the same key.")
+    void shouldCreateOnceForConcurrentRequests() {
+        var ids = Flux.range(0, 8)
+                .parallel()
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> service.createPurchase("key-1", newPurchase()).map(Purchase::getId))
+                .sequential()
+                .collectList()
+                .block();
+
+        assertThat(ids).hasSize(8).containsOnly(ids.get(0));
+        StepVerifier.create(purchaseRepository.count())
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should find a persisted key from another instance.")
+    void shouldShareKeysThroughTheDatabase() {
+        var created = service.createPurchase("key-1", newPurchase()).block();
+        var otherInstance = new PurchaseIdempotencyService(purchaseService, idempotencyKeyRepository, transactionalOperator,
+                new IdempotencyProperties(100, Duration.ofHours(1), true, 5, Duration.ofMillis(100), Duration.ofHours(1)));
+
+        StepVerifier.create(otherInstance.createPurchase("key-1", newPurchase()).map(Purchase::getId))
+                .expectNext(created.getId())
+                .verifyComplete();
+
+        StepVerifier.create(purchaseRepository.count())
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should release a key whose creation failed.")
+    void shouldReleaseKeyOfFailedCreation() {
+        var invalidPurchase = PurchaseFactory.buildPurchase(null,
+                List.of(PurchaseFactory.buildProduct("name".repeat(100), "ref", 2, new BigDecimal("12.10"), null)));
+
+        StepVerifier.create(service.createPurchase("key-1", invalidPurchase))
+                .expectError()
+                .verify();
+
+        StepVerifier.create(service.createPurchase("key-1", newPurchase()))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        StepVerifier.create(idempotencyKeyRepository.count())
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should neither cache nor count a purchase whose key could not be committed.")
+    void shouldApplySideEffectsOnlyOnceCommitted() {
+        doReturn(Mono.error(new IllegalStateException("Database unavailable")))
+                .when(idempotencyKeyRepository).setPurchaseId(eq("key-1"), anyLong());
+
+        StepVerifier.create(service.createPurchase("key-1", newPurchase()))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        assertThat(purchaseService.getStatistics().getByCurrency()).isEmpty();
+        StepVerifier.create(purchaseService.findPurchaseById(1L))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should look a key up again when claiming it timed out on a concurrent claim.")
+    void shouldRetryWhenClaimTimesOut() {
+        doReturn(Mono.error(new QueryTimeoutException("Timeout trying to lock table IDEMPOTENCY_KEY")))
+                .doCallRealMethod()
+                .when(idempotencyKeyRepository).claim(eq("key-1"), any());
+
+        StepVerifier.create(service.createPurchase("key-1", newPurchase()))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(idempotencyKeyRepository, times(2)).findPurchaseId(eq("key-1"), any());
+        StepVerifier.create(purchaseRepository.count())
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should not retry a transient failure once the purchase is written, and release the key.")
+    void shouldNotRetryTransientFailureAfterInsert() {
+        doReturn(Mono.error(new QueryTimeoutException("Timeout trying to lock table IDEMPOTENCY_KEY")))
+                .doCallRealMethod()
+                .when(idempotencyKeyRepository).setPurchaseId(eq("key-1"), anyLong());
+
+        StepVerifier.create(service.createPurchase("key-1", newPurchase()))
+                .expectError(QueryTimeoutException.class)
+                .verify();
+        verify(idempotencyKeyRepository, times(1)).claim(eq("key-1"), any());
+
+        StepVerifier.create(service.createPurchase("key-1", newPurchase()))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(purchaseRepository.count())
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should claim an expired key again, and leave the other expired keys to the background cleanup.")
+    void shouldDeleteExpiredKeys() {
+        var expiredAt = LocalDateTime.now(ZoneOffset.UTC).minusHours(25);
+        idempotencyKeyRepository.claim("key-1", expiredAt).block();
+        idempotencyKeyRepository.claim("key-2", expiredAt).block();
+
+        StepVerifier.create(service.createPurchase("key-1", newPurchase()))
+                .expectNextCount(1)
+                .verifyComplete();
+        verify(idempotencyKeyRepository, never()).deleteCreatedUntil(any());
+
+        StepVerifier.create(idempotencyKeyCleanup.deleteExpired())
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(idempotencyKeyRepository.count())
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    private static Purchase newPurchase() {
+        return PurchaseFactory.buildPurchase(null,
+                List.of(PurchaseFactory.buildProduct("name", "ref", 3, new BigDecimal("33.10"), null)));
+    }
+}
@@ -0,0 +1,99 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.config.LookupBatchingProperties;
+import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.repository.PurchaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PurchaseLookupBatcherTest {
+
+    private final PurchaseRepository purchaseRepository = mock(PurchaseRepository.class);
+
+    private final Purchase purchase1 = PurchaseFactory.buildPurchaseWithId(1L, BigDecimal.valueOf(12.4), List.of());
+    private final Purchase purchase2 = PurchaseFactory.buildPurchaseWithId(2L, BigDecimal.valueOf(3.1), List.of());
+
+    private PurchaseLookupBatcher batcher;
+
+    @AfterEach
+    void stop() {
+        batcher.stop();
+    }
+
+    @Test
+    @DisplayName("Should load the purchases looked up within the window with a single query.")
+    void shouldBatchConcurrentLookups() {
+        batcher = new PurchaseLookupBatcher(purchaseRepository, new LookupBatchingProperties(Duration.ofMillis(50), 100));
+        when(purchaseRepository.findAllWithProductsByIdIn(List.of(1L, 2L, 3L))).thenReturn(Flux.just(purchase1, purchase2));
+
+        StepVerifier.create(Mono.zip(
+                        batcher.load(1L),
+                        batcher.load(2L),
+                        batcher.load(3L).hasElement(),
+                        batcher.load(1L)))
+                .assertNext(lookups -> {
+                    assertThat(lookups.getT1()).isEqualTo(purchase1);
+                    assertThat(lookups.getT2()).isEqualTo(purchase2);
+                    assertThat(lookups.getT3()).isFalse();
+                    assertThat(lookups.getT4()).isEqualTo(purchase1);
+                })
+                .verifyComplete();
+
+        verify(purchaseRepository, times(1)).findAllWithProductsByIdIn(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should send a batch as soon as it reaches the maximum batch size.")
+    void shouldSendFullBatchesWithoutWaiting() {
+        batcher = new PurchaseLookupBatcher(purchaseRepository, new LookupBatchingProperties(Duration.ofHours(1), 2));
+        when(purchaseRepository.findAllWithProductsByIdIn(List.of(1L, 2L))).thenReturn(Flux.just(purchase1, purchase2));
+
+        StepVerifier.create(Mono.zip(batcher.load(1L), batcher.load(2L)))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Should fail every lookup of a batch whose query failed.")
+    void shouldPropagateBatchErrors() {
+        batcher = new PurchaseLookupBatcher(purchaseRepository, new LookupBatchingProperties(Duration.ofMillis(50), 100));
+        when(purchaseRepository.findAllWithProductsByIdIn(anyCollection())).thenReturn(Flux.error(new IllegalStateException("boom")));
+
+        StepVerifier.create(Mono.zipDelayError(batcher.load(1L), batcher.load(2L)))
+                .verifyError();
+
+        StepVerifier.create(batcher.load(1L))
+                .verifyError(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Should look purchases up one by one when the window is zero.")
+    void shouldNotBatchWhenDisabled() {
+        batcher = new PurchaseLookupBatcher(purchaseRepository, new LookupBatchingProperties(Duration.ZERO, 100));
+        when(purchaseRepository.findByIdWithProducts(1L)).thenReturn(Mono.just(purchase1));
+
+        StepVerifier.create(batcher.load(1L))
+                .expectNext(purchase1)
+                .verifyComplete();
+
+        verify(purchaseRepository, never()).findAllWithProductsByIdIn(anyCollection());
+    }
+}
@@ -0,0 +1,146 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseOutboxEvent;
+import com.maxenceraux.purse_test.repository.PurchaseOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// small batches, for a drain to read several of them
+@SpringBootTest(properties = {"purchase.outbox.relay-enabled=false", "purchase.outbox.batch-size=2"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class PurchaseOutboxRelayTest {
+
+    @Autowired
+    private PurchaseService purchaseService;
+
+    @Autowired
+    private PurchaseOutboxRelay relay;
+
+    @Autowired
+    private PurchaseOutboxRepository purchaseOutboxRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean
+    private PurchaseEventSink sink;
+
+    private final List<PurchaseOutboxEvent> sent = new ArrayList<>();
+
+    @Test
+    @DisplayName("Should write an event with every purchase change and relay them in order.")
+    void shouldRelayEventsInOrder() {
+        when(sink.send(any())).thenAnswer(invocation -> Mono.fromRunnable(() -> sent.add(invocation.getArgument(0))));
+        var purchase = purchaseService.createPurchase(newPurchase()).block();
+        purchaseService.changePaymentMethod(purchase.getId(), PaymentMethod.PAYPAL).block();
+        purchaseService.updateStatus(purchase.getId(), PaymentStatus.AUTHORIZED).block();
+
+        StepVerifier.create(relay.drain())
+                .expectNext(3)
+                .verifyComplete();
+
+        assertThat(sent).extracting(PurchaseOutboxEvent::getType).containsExactly(
+                PurchaseOutboxEvent.Type.CREATED,
+                PurchaseOutboxEvent.Type.PAYMENT_METHOD_CHANGED,
+                PurchaseOutboxEvent.Type.STATUS_CHANGED);
+        assertThat(sent).extracting(PurchaseOutboxEvent::getVersion).containsExactly(0L, 1L, 2L);
+        assertThat(sent.get(2).getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+        assertThat(sent.get(2).getPaymentMethod()).isEqualTo(PaymentMethod.PAYPAL);
+        StepVerifier.create(purchaseOutboxRepository.count())
+                .expectNext(0L)
+                .verifyComplete();
+        assertThat(meterRegistry.get("purchase.outbox.delivered").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should keep the events of a purchase back after a failure and send them again in order.")
+    void shouldRedeliverAfterFailure() {
+        var failing = purchaseService.createPurchase(newPurchase()).block();
+        var other = purchaseService.createPurchase(newPurchase()).block();
+        purchaseService.updateStatus(failing.getId(), PaymentStatus.AUTHORIZED).block();
+        when(sink.send(any())).thenAnswer(invocation -> {
+            PurchaseOutboxEvent event = invocation.getArgument(0);
+            return event.getPurchaseId().equals(failing.getId())
+                    ? Mono.error(new IllegalStateException("unavailable"))
+                    : Mono.fromRunnable(() -> sent.add(event));
+        });
+
+        StepVerifier.create(relay.drain())
+                .expectNext(1)
+                .verifyComplete();
+        assertThat(sent).extracting(PurchaseOutboxEvent::getPurchaseId).containsExactly(other.getId());
+
+        sent.clear();
+        when(sink.send(any())).thenAnswer(invocation -> Mono.fromRunnable(() -> sent.add(invocation.getArgument(0))));
+
+        StepVerifier.create(relay.drain())
+                .expectNext(2)
+                .verifyComplete();
+        assertThat(sent).extracting(PurchaseOutboxEvent::getType).containsExactly(
+                PurchaseOutboxEvent.Type.CREATED,
+                PurchaseOutboxEvent.Type.STATUS_CHANGED);
+        assertThat(meterRegistry.get("purchase.outbox.failures").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should relay the events of other purchases while a failing purchase fills whole batches.")
+    void shouldSkipPurchasesKeptBack() {
+        var failing = purchaseService.createPurchase(newPurchase()).block();
+        purchaseService.changePaymentMethod(failing.getId(), PaymentMethod.PAYPAL).block();
+        purchaseService.updateStatus(failing.getId(), PaymentStatus.AUTHORIZED).block();
+        var other = purchaseService.createPurchase(newPurchase()).block();
+        when(sink.send(any())).thenAnswer(invocation -> {
+            PurchaseOutboxEvent event = invocation.getArgument(0);
+            return event.getPurchaseId().equals(failing.getId())
+                    ? Mono.error(new IllegalStateException("unavailable"))
+                    : Mono.fromRunnable(() -> sent.add(event));
+        });
+
+        StepVerifier.create(relay.drain())
+                .expectNext(1)
+                .verifyComplete();
+
+        assertThat(sent).extracting(PurchaseOutboxEvent::getPurchaseId).containsExactly(other.getId());
+        StepVerifier.create(purchaseOutboxRepository.count())
+                .expectNext(3L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should not write events of a change rolled back.")
+    void shouldNotWriteEventsOfFailedChanges() {
+        var purchase = purchaseService.createPurchase(newPurchase()).block();
+
+        StepVerifier.create(purchaseService.updateStatus(purchase.getId(), PaymentStatus.CAPTURED))
+                .expectError()
+                .verify();
+
+        StepVerifier.create(purchaseOutboxRepository.count())
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    private static Purchase newPurchase() {
+        return PurchaseFactory.buildPurchase(null,
+                List.of(PurchaseFactory.buildProduct("name", "ref", 3, new BigDecimal("33.10"), null)));
+    }
+}
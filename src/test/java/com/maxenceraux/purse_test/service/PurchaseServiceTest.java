@@ -1,15 +1,21 @@
 package com.maxenceraux.purse_test.service;
 
+import com.maxenceraux.purse_test.exception.AmountOutOfRangeException;
+import com.maxenceraux.purse_test.exception.ConcurrentPurchaseUpdateException;
 import com.maxenceraux.purse_test.exception.MissingPurchaseException;
 import com.maxenceraux.purse_test.exception.UnsupportedMethodChangeException;
 import com.maxenceraux.purse_test.exception.UnsupportedStatusChangeException;
 import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.model.Money;
 import com.maxenceraux.purse_test.model.PaymentMethod;
 import com.maxenceraux.purse_test.model.PaymentStatus;
 import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseEventDTO;
+import com.maxenceraux.purse_test.model.PurchaseSearchCriteria;
 import com.maxenceraux.purse_test.model.PurchasedProduct;
 import com.maxenceraux.purse_test.repository.PurchaseRepository;
 import com.maxenceraux.purse_test.repository.PurchasedProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -18,16 +24,25 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
 import java.util.List;
 
-@SpringBootTest
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "purchase.pagination.stream-page-size=2")
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 class PurchaseServiceTest {
 
-    @Autowired
+    @MockitoSpyBean
     private PurchaseRepository purchaseRepository;
 
     @Autowired
@@ -36,13 +51,16 @@ class PurchaseServiceTest {
     @Autowired
     private PurchaseService service;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @BeforeEach
     void init() {
-        var savedProduct1 = PurchaseFactory.buildProduct("name", "ref", 3, BigDecimal.valueOf(33.1), 1L);
-        var savedProduct2 = PurchaseFactory.buildProduct("name2", "ref2", 2, BigDecimal.valueOf(12.1), 1L);
-        var savedPurchase = PurchaseFactory.buildPurchase(BigDecimal.valueOf(123.5), null);
-        var savedProduct3 = PurchaseFactory.buildProduct("name3", "ref3", 4, BigDecimal.valueOf(3.1), 2L);
-        var savedPurchase2 = PurchaseFactory.buildPurchase(BigDecimal.valueOf(12.4), null);
+        var savedProduct1 = PurchaseFactory.buildProduct("name", "ref", 3, new BigDecimal("33.10"), 1L);
+        var savedProduct2 = PurchaseFactory.buildProduct("name2", "ref2", 2, new BigDecimal("12.10"), 1L);
+        var savedPurchase = PurchaseFactory.buildPurchase(new BigDecimal("123.50"), null);
+        var savedProduct3 = PurchaseFactory.buildProduct("name3", "ref3", 4, new BigDecimal("3.10"), 2L);
+        var savedPurchase2 = PurchaseFactory.buildPurchase(new BigDecimal("12.40"), null);
 
         purchaseRepository.saveAll(List.of(savedPurchase, savedPurchase2)).blockLast();
         purchasedProductRepository.saveAll(List.of(savedProduct1, savedProduct2, savedProduct3)).blockLast();
@@ -51,24 +69,26 @@ class PurchaseServiceTest {
     @Test
     @DisplayName("Should save purchase properly and return it.")
     void shouldSavePurchaseProperlyAndReturnIt() {
-        var product1 = PurchaseFactory.buildProduct("name", "ref", 3, BigDecimal.valueOf(33.1), null);
-        var product2 = PurchaseFactory.buildProduct( "name", "ref", 2, BigDecimal.valueOf(12.1), null);
+        var product1 = PurchaseFactory.buildProduct("name", "ref", 3, new BigDecimal("33.10"), null);
+        var product2 = PurchaseFactory.buildProduct( "name", "ref", 2, new BigDecimal("12.10"), null);
         var purchaseToSave = new Purchase(
                 null,
                 null,
                 "EUR",
                 PaymentMethod.CREDIT_CARD,
                 null,
+                null,
                 List.of(product1, product2));
 
-        var expectedProduct1 = new PurchasedProduct(4L, "name", "ref", 3, BigDecimal.valueOf(33.1), 3L);
-        var expectedProduct2 = new PurchasedProduct(5L, "name", "ref", 2, BigDecimal.valueOf(12.1), 3L);
+        var expectedProduct1 = new PurchasedProduct(4L, "name", "ref", 3, Money.of(new BigDecimal("33.10"), "EUR"), 3L);
+        var expectedProduct2 = new PurchasedProduct(5L, "name", "ref", 2, Money.of(new BigDecimal("12.10"), "EUR"), 3L);
         var expectedPurchase = new Purchase(
                 3L,
-                BigDecimal.valueOf(123.5),
+                Money.of(new BigDecimal("123.50"), "EUR"),
                 "EUR",
                 PaymentMethod.CREDIT_CARD,
                 PaymentStatus.IN_PROGRESS,
+                0L,
                 List.of(expectedProduct1, expectedProduct2));
 
         StepVerifier.withVirtualTime(() -> service.createPurchase(purchaseToSave))
@@ -84,15 +104,85 @@ class PurchaseServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("Should save purchases in batch and return them.")
+    void shouldSavePurchasesInBatchAndReturnThem() {
+        var product1 = PurchaseFactory.buildProduct("name", "ref", 3, new BigDecimal("33.10"), null);
+        var product2 = PurchaseFactory.buildProduct("name2", "ref2", 4, new BigDecimal("3.10"), null);
+        var purchaseToSave1 = new Purchase(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, null, List.of(product1));
+        var purchaseToSave2 = new Purchase(null, null, "USD", PaymentMethod.PAYPAL, null, null, List.of(product2));
+
+        var expectedProduct1 = new PurchasedProduct(4L, "name", "ref", 3, Money.of(new BigDecimal("33.10"), "EUR"), 3L);
+        var expectedProduct2 = new PurchasedProduct(5L, "name2", "ref2", 4, Money.of(new BigDecimal("3.10"), "USD"), 4L);
+        var expectedPurchase1 = new Purchase(3L, Money.of(new BigDecimal("99.30"), "EUR"), "EUR", PaymentMethod.CREDIT_CARD, PaymentStatus.IN_PROGRESS, 0L, List.of(expectedProduct1));
+        var expectedPurchase2 = new Purchase(4L, Money.of(new BigDecimal("12.40"), "USD"), "USD", PaymentMethod.PAYPAL, PaymentStatus.IN_PROGRESS, 0L, List.of(expectedProduct2));
+
+        StepVerifier.withVirtualTime(() -> service.createPurchases(List.of(purchaseToSave1, purchaseToSave2)))
+                .expectNext(expectedPurchase1, expectedPurchase2)
+                .verifyComplete();
+
+        StepVerifier.withVirtualTime(() -> service.findAllPurchases(2L))
+                .expectNext(expectedPurchase1, expectedPurchase2)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should not save purchase when a product cannot be saved.")
+    void shouldNotSavePurchaseWhenProductCannotBeSaved() {
+        var product1 = PurchaseFactory.buildProduct("name", "ref", 3, new BigDecimal("33.10"), null);
+        var product2 = PurchaseFactory.buildProduct("name".repeat(100), "ref", 2, new BigDecimal("12.10"), null);
+        var purchaseToSave = new Purchase(
+                null,
+                null,
+                "EUR",
+                PaymentMethod.CREDIT_CARD,
+                null,
+                null,
+                List.of(product1, product2));
+
+        StepVerifier.withVirtualTime(() -> service.createPurchase(purchaseToSave))
+                .expectError()
+                .verify();
+
+        StepVerifier.withVirtualTime(() -> purchaseRepository.count())
+                .expectNext(2L)
+                .verifyComplete();
+
+        StepVerifier.withVirtualTime(() -> purchasedProductRepository.count())
+                .expectNext(3L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should signal an overflowing amount as an error instead of throwing it.")
+    void shouldSignalOverflowingAmountAsError() {
+        var product = PurchaseFactory.buildProduct("name", "ref", 10, new BigDecimal("9999999999999999.99"), null);
+        var purchaseToSave = new Purchase(null, null, "EUR", PaymentMethod.CREDIT_CARD, null, null, List.of(product));
+
+        var creation = service.createPurchase(purchaseToSave);
+        var batchCreation = service.createPurchases(List.of(purchaseToSave));
+
+        StepVerifier.create(creation)
+                .expectError(AmountOutOfRangeException.class)
+                .verify();
+        StepVerifier.create(batchCreation)
+                .expectError(AmountOutOfRangeException.class)
+                .verify();
+
+        StepVerifier.create(purchaseRepository.count())
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
     @Test
     @DisplayName("Should find all purchases.")
     void shouldFindAllPurchases() {
-        var expectedProduct1 = PurchaseFactory.buildProductWithId(1L, "name", "ref", 3, BigDecimal.valueOf(33.1), 1L);
-        var expectedProduct2 = PurchaseFactory.buildProductWithId(2L, "name2", "ref2", 2, BigDecimal.valueOf(12.1), 1L);
-        var expectedPurchase = PurchaseFactory.buildPurchaseWithId(1L, BigDecimal.valueOf(123.5), List.of(expectedProduct1, expectedProduct2));
+        var expectedProduct1 = PurchaseFactory.buildProductWithId(1L, "name", "ref", 3, new BigDecimal("33.10"), 1L);
+        var expectedProduct2 = PurchaseFactory.buildProductWithId(2L, "name2", "ref2", 2, new BigDecimal("12.10"), 1L);
+        var expectedPurchase = PurchaseFactory.buildPurchaseWithId(1L, new BigDecimal("123.50"), List.of(expectedProduct1, expectedProduct2));
 
-        var expectedProduct3 = PurchaseFactory.buildProductWithId(3L, "name3", "ref3", 4, BigDecimal.valueOf(3.1), 2L);
-        var expectedPurchase2 = PurchaseFactory.buildPurchaseWithId(2L, BigDecimal.valueOf(12.4), List.of(expectedProduct3));
+        var expectedProduct3 = PurchaseFactory.buildProductWithId(3L, "name3", "ref3", 4, new BigDecimal("3.10"), 2L);
+        var expectedPurchase2 = PurchaseFactory.buildPurchaseWithId(2L, new BigDecimal("12.40"), List.of(expectedProduct3));
 
 
         StepVerifier.withVirtualTime(() -> service.findAllPurchases())
@@ -100,17 +190,169 @@ class PurchaseServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("Should find purchases without products.")
+    void shouldFindPurchasesWithoutProducts() {
+        purchaseRepository.save(PurchaseFactory.buildDefaultPurchase()).block();
+
+        var expectedPurchase = PurchaseFactory.buildPurchaseWithId(3L, new BigDecimal("12.40"), List.of());
+
+        StepVerifier.withVirtualTime(() -> service.findAllPurchases().skip(2))
+                .expectNext(expectedPurchase)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should find a page of purchases after a cursor.")
+    void shouldFindPageOfPurchasesAfterCursor() {
+        purchaseRepository.save(PurchaseFactory.buildDefaultPurchase()).block();
+
+        var expectedProduct3 = PurchaseFactory.buildProductWithId(3L, "name3", "ref3", 4, new BigDecimal("3.10"), 2L);
+        var expectedPurchase2 = PurchaseFactory.buildPurchaseWithId(2L, new BigDecimal("12.40"), List.of(expectedProduct3));
+
+        StepVerifier.withVirtualTime(() -> service.findAllPurchases(1L, 1))
+                .expectNext(expectedPurchase2)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should search purchases matching every filter.")
+    void shouldSearchPurchases() {
+        var expectedProduct3 = PurchaseFactory.buildProductWithId(3L, "name3", "ref3", 4, new BigDecimal("3.10"), 2L);
+        var expectedPurchase2 = PurchaseFactory.buildPurchaseWithId(2L, new BigDecimal("12.40"), List.of(expectedProduct3));
+
+        var byReference = new PurchaseSearchCriteria(null, null, null, null, null, "ref3");
+        StepVerifier.create(service.searchPurchases(byReference, 0L, 10))
+                .expectNext(expectedPurchase2)
+                .verifyComplete();
+
+        var byAmount = new PurchaseSearchCriteria(PaymentStatus.IN_PROGRESS, PaymentMethod.CREDIT_CARD, "EUR",
+                Money.of(new BigDecimal("10"), "EUR"), Money.of(new BigDecimal("100"), "EUR"), null);
+        StepVerifier.create(service.searchPurchases(byAmount, 0L, 10))
+                .expectNext(expectedPurchase2)
+                .verifyComplete();
+
+        var noMatch = new PurchaseSearchCriteria(PaymentStatus.CAPTURED, null, null, null, null, "ref3");
+        StepVerifier.create(service.searchPurchases(noMatch, 0L, 10))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should search purchases page by page.")
+    void shouldSearchPurchasesAfterCursor() {
+        var all = new PurchaseSearchCriteria(null, null, "EUR", null, null, null);
+
+        StepVerifier.create(service.searchPurchases(all, 0L, 1).map(Purchase::getId))
+                .expectNext(1L)
+                .verifyComplete();
+        StepVerifier.create(service.searchPurchases(all, 1L, 1).map(Purchase::getId))
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should stream purchases after a cursor.")
+    void shouldStreamPurchasesAfterCursor() {
+        purchaseRepository.save(PurchaseFactory.buildDefaultPurchase()).block();
+
+        var expectedProduct3 = PurchaseFactory.buildProductWithId(3L, "name3", "ref3", 4, new BigDecimal("3.10"), 2L);
+        var expectedPurchase2 = PurchaseFactory.buildPurchaseWithId(2L, new BigDecimal("12.40"), List.of(expectedProduct3));
+        var expectedPurchase3 = PurchaseFactory.buildPurchaseWithId(3L, new BigDecimal("12.40"), List.of());
+
+        StepVerifier.withVirtualTime(() -> service.findAllPurchases(1L))
+                .expectNext(expectedPurchase2, expectedPurchase3)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should stream purchases page by page until a page is not full.")
+    void shouldStreamPurchasesAcrossPages() {
+        purchaseRepository.saveAll(List.of(PurchaseFactory.buildDefaultPurchase(), PurchaseFactory.buildDefaultPurchase(),
+                PurchaseFactory.buildDefaultPurchase())).blockLast();
+
+        StepVerifier.create(service.findAllPurchases().map(Purchase::getId))
+                .expectNext(1L, 2L, 3L, 4L, 5L)
+                .verifyComplete();
+        StepVerifier.create(service.findAllPurchases(3L).map(Purchase::getId), 1)
+                .expectNext(4L)
+                .thenRequest(1)
+                .expectNext(5L)
+                .verifyComplete();
+    }
+
     @Test
     @DisplayName("Should find one purchase.")
     void shouldFindOnePurchase() {
-        var expectedProduct = PurchaseFactory.buildProductWithId(3L, "name3", "ref3", 4, BigDecimal.valueOf(3.1), 2L);
-        var expectedPurchase = PurchaseFactory.buildPurchaseWithId(2L, BigDecimal.valueOf(12.4), List.of(expectedProduct));
+        var expectedProduct = PurchaseFactory.buildProductWithId(3L, "name3", "ref3", 4, new BigDecimal("3.10"), 2L);
+        var expectedPurchase = PurchaseFactory.buildPurchaseWithId(2L, new BigDecimal("12.40"), List.of(expectedProduct));
 
         StepVerifier.withVirtualTime(() -> service.findPurchaseById(2L))
                 .expectNext(expectedPurchase)
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("Should find the updated purchase once it has been cached.")
+    void shouldFindUpdatedPurchaseOnceCached() {
+        service.findPurchaseById(2L).block();
+
+        service.updateStatus(2L, PaymentStatus.AUTHORIZED).block();
+
+        StepVerifier.withVirtualTime(() -> service.findPurchaseById(2L).map(Purchase::getStatus))
+                .expectNext(PaymentStatus.AUTHORIZED)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should time purchase operations and count status transitions and update conflicts.")
+    void shouldRecordOperationMetrics() {
+        service.findPurchaseById(2L).block();
+        service.createPurchases(List.of(PurchaseFactory.buildPurchase(null,
+                List.of(PurchaseFactory.buildProduct("name", "ref", 3, new BigDecimal("33.10"), null))))).blockLast();
+        service.updateStatus(2L, PaymentStatus.AUTHORIZED).block();
+        StepVerifier.create(service.updateStatus(2L, PaymentStatus.IN_PROGRESS))
+                .verifyError(UnsupportedStatusChangeException.class);
+
+        assertThat(meterRegistry.get("purchase.operations").tags("operation", "findById", "outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("purchase.operations").tags("operation", "createBatch", "outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("purchase.operations").tags("operation", "updateStatus", "outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("purchase.operations").tags("operation", "updateStatus", "outcome", "error").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("purchase.status.transitions").tags("from", "IN_PROGRESS", "to", "AUTHORIZED").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("purchase.status.transitions").tags("from", "AUTHORIZED", "to", "CAPTURED").counter().count())
+                .isZero();
+        assertThat(meterRegistry.get("purchase.update.conflicts").tags("operation", "paymentMethod").counter().count())
+                .isZero();
+        assertThat(meterRegistry.get("purchase.update.retries").tags("operation", "paymentMethod").counter().count())
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("Should stream the current state of a purchase then its changes until it is captured.")
+    void shouldStreamPurchaseEvents() {
+        StepVerifier.create(service.purchaseEvents(2L))
+                .expectNext(new PurchaseEventDTO(PurchaseEventDTO.Type.CURRENT, 2L, PaymentStatus.IN_PROGRESS, PaymentMethod.CREDIT_CARD, 0L))
+                .then(() -> service.changePaymentMethod(2L, PaymentMethod.PAYPAL).block())
+                .expectNext(new PurchaseEventDTO(PurchaseEventDTO.Type.PAYMENT_METHOD_CHANGED, 2L, PaymentStatus.IN_PROGRESS, PaymentMethod.PAYPAL, 1L))
+                .then(() -> service.updateStatus(2L, PaymentStatus.AUTHORIZED).block())
+                .expectNext(new PurchaseEventDTO(PurchaseEventDTO.Type.STATUS_CHANGED, 2L, PaymentStatus.AUTHORIZED, PaymentMethod.PAYPAL, 2L))
+                .then(() -> service.updateStatus(2L, PaymentStatus.CAPTURED).block())
+                .expectNext(new PurchaseEventDTO(PurchaseEventDTO.Type.STATUS_CHANGED, 2L, PaymentStatus.CAPTURED, PaymentMethod.PAYPAL, 3L))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should not stream events of an unknown purchase.")
+    void shouldNotStreamEventsOfUnknownPurchase() {
+        StepVerifier.create(service.purchaseEvents(3L))
+                .expectError(MissingPurchaseException.class)
+                .verify();
+    }
+
     @ParameterizedTest
     @CsvSource({
             "IN_PROGRESS, AUTHORIZED",
@@ -125,6 +367,7 @@ class PurchaseServiceTest {
         var expectedProduct = PurchaseFactory.buildDefaultPurchase().withPurchasedProducts(List.of(savedProduct));
         expectedProduct.setStatus(newStatus);
         expectedProduct.setId(3L);
+        expectedProduct.setVersion(1L);
 
         purchaseRepository.save(savedPurchase).block();
         purchasedProductRepository.save(savedProduct).block();
@@ -138,6 +381,44 @@ class PurchaseServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("Should apply a status change only once when requested concurrently.")
+    void shouldApplyStatusChangeOnlyOnceWhenRequestedConcurrently() {
+        purchaseRepository.save(PurchaseFactory.buildDefaultPurchase()).block();
+
+        var outcomes = Flux.range(0, 8)
+                .parallel()
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> service.updateStatus(3L, PaymentStatus.AUTHORIZED)
+                        .map(purchase -> "updated")
+                        .onErrorResume(UnsupportedStatusChangeException.class, e -> Mono.just("rejected"))
+                        .onErrorResume(ConcurrentPurchaseUpdateException.class, e -> Mono.just("conflict")))
+                .sequential()
+                .collectList()
+                .block();
+
+        assertThat(outcomes).containsOnlyOnce("updated").hasSize(8);
+    }
+
+    @Test
+    @DisplayName("Should retry an update that lost a race and report a conflict once retries are exhausted.")
+    void shouldRetryUpdateAndReportConflict() {
+        purchaseRepository.save(PurchaseFactory.buildDefaultPurchase()).block();
+
+        // every write finds a newer version than the one read
+        var concurrentWrites = purchaseRepository.findById(3L)
+                .flatMap(purchase -> purchaseRepository.updateStatus(3L, purchase.getVersion(), PaymentStatus.IN_PROGRESS));
+        when(purchaseRepository.updateStatus(eq(3L), anyLong(), eq(PaymentStatus.AUTHORIZED)))
+                .thenAnswer(invocation -> concurrentWrites.thenReturn(0));
+
+        StepVerifier.create(service.updateStatus(3L, PaymentStatus.AUTHORIZED))
+                .expectError(ConcurrentPurchaseUpdateException.class)
+                .verify();
+
+        assertThat(meterRegistry.counter("purchase.update.conflicts", "operation", "status").count()).isEqualTo(4);
+        assertThat(meterRegistry.counter("purchase.update.retries", "operation", "status").count()).isEqualTo(3);
+    }
+
     @Test
     @DisplayName("Should not update status on unknown purchase.")
     void shouldNotUpdateStatusOnUnknownPurchase() {
@@ -179,6 +460,7 @@ class PurchaseServiceTest {
         var expectedProduct = PurchaseFactory.buildDefaultPurchase().withPurchasedProducts(List.of(savedProduct));
         expectedProduct.setPaymentMethod(PaymentMethod.PAYPAL);
         expectedProduct.setId(3L);
+        expectedProduct.setVersion(1L);
 
         purchaseRepository.save(savedPurchase).block();
         purchasedProductRepository.save(savedProduct).block();
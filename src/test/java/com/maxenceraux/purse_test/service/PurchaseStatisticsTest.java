@@ -0,0 +1,93 @@
+package com.maxenceraux.purse_test.service;
+
+import com.maxenceraux.purse_test.factory.PurchaseFactory;
+import com.maxenceraux.purse_test.model.Money;
+import com.maxenceraux.purse_test.model.PaymentMethod;
+import com.maxenceraux.purse_test.model.PaymentStatus;
+import com.maxenceraux.purse_test.model.Purchase;
+import com.maxenceraux.purse_test.model.PurchaseStatisticsDTO.Totals;
+import com.maxenceraux.purse_test.model.PurchaseTotals;
+import com.maxenceraux.purse_test.repository.PurchaseRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PurchaseStatisticsTest {
+
+    private final PurchaseRepository purchaseRepository = mock(PurchaseRepository.class);
+
+    private final PurchaseStatistics statistics = new PurchaseStatistics(purchaseRepository);
+
+    @Test
+    @DisplayName("Should load the totals computed by the database.")
+    void shouldLoadTotals() {
+        when(purchaseRepository.sumByCurrencyAndStatusAndPaymentMethod()).thenReturn(Flux.just(
+                new PurchaseTotals("EUR", PaymentStatus.IN_PROGRESS, PaymentMethod.CREDIT_CARD, 2L, Money.of(new BigDecimal("24.80"), "EUR")),
+                new PurchaseTotals("EUR", PaymentStatus.CAPTURED, PaymentMethod.PAYPAL, 1L, Money.of(new BigDecimal("3.10"), "EUR")),
+                new PurchaseTotals("USD", PaymentStatus.IN_PROGRESS, PaymentMethod.PAYPAL, 1L, Money.of(new BigDecimal("10.00"), "USD"))));
+
+        statistics.afterSingletonsInstantiated();
+
+        var snapshot = statistics.snapshot();
+        assertThat(snapshot.getByCurrency()).isEqualTo(Map.of(
+                "EUR", new Totals(3, new BigDecimal("27.90")),
+                "USD", new Totals(1, new BigDecimal("10.00"))));
+        assertThat(snapshot.getByStatus()).isEqualTo(Map.of(
+                PaymentStatus.IN_PROGRESS, Map.of(
+                        "EUR", new Totals(2, new BigDecimal("24.80")),
+                        "USD", new Totals(1, new BigDecimal("10.00"))),
+                PaymentStatus.CAPTURED, Map.of("EUR", new Totals(1, new BigDecimal("3.10")))));
+        assertThat(snapshot.getByPaymentMethod()).isEqualTo(Map.of(
+                PaymentMethod.CREDIT_CARD, Map.of("EUR", new Totals(2, new BigDecimal("24.80"))),
+                PaymentMethod.PAYPAL, Map.of(
+                        "EUR", new Totals(1, new BigDecimal("3.10")),
+                        "USD", new Totals(1, new BigDecimal("10.00")))));
+    }
+
+    @Test
+    @DisplayName("Should move a purchase between totals when its status or payment method changes.")
+    void shouldMoveUpdatedPurchases() {
+        var purchase = PurchaseFactory.buildPurchaseWithId(1L, new BigDecimal("12.40"), List.of());
+        statistics.created(purchase);
+
+        purchase.setStatus(PaymentStatus.AUTHORIZED);
+        statistics.statusChanged(purchase, PaymentStatus.IN_PROGRESS);
+        purchase.setPaymentMethod(PaymentMethod.GIFT_CARD);
+        statistics.paymentMethodChanged(purchase, PaymentMethod.CREDIT_CARD);
+
+        var snapshot = statistics.snapshot();
+        assertThat(snapshot.getByCurrency()).isEqualTo(Map.of("EUR", new Totals(1, new BigDecimal("12.40"))));
+        assertThat(snapshot.getByStatus()).isEqualTo(Map.of(PaymentStatus.AUTHORIZED, Map.of("EUR", new Totals(1, new BigDecimal("12.40")))));
+        assertThat(snapshot.getByPaymentMethod()).isEqualTo(Map.of(PaymentMethod.GIFT_CARD, Map.of("EUR", new Totals(1, new BigDecimal("12.40")))));
+    }
+
+    @Test
+    @DisplayName("Should scale the totals by the fraction digits of their currency.")
+    void shouldScaleTotalsByCurrency() {
+        var purchase = PurchaseFactory.buildPurchaseWithId(1L, new BigDecimal("12.40"), List.of());
+        purchase.setCurrency("JPY");
+        statistics.created(purchase);
+
+        assertThat(statistics.snapshot().getByCurrency()).isEqualTo(Map.of("JPY", new Totals(1, new BigDecimal("1240"))));
+    }
+
+    @Test
+    @DisplayName("Should not lose concurrent updates.")
+    void shouldAccumulateConcurrently() {
+        IntStream.range(0, 10_000).parallel().forEach(i -> {
+            Purchase purchase = PurchaseFactory.buildPurchaseWithId((long) i, new BigDecimal("0.10"), List.of());
+            statistics.created(purchase);
+        });
+
+        assertThat(statistics.snapshot().getByCurrency()).isEqualTo(Map.of("EUR", new Totals(10_000, new BigDecimal("1000.00"))));
+    }
+}